@@ -0,0 +1,38 @@
+package io.github.thomashuss.reversi;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that allocation rates are reported next to timings, and
+ * writes the results as JSON to <code>jmh-result.json</code> unless told otherwise.  Accepts the usual JMH
+ * command line, e.g. a benchmark name pattern or <code>-rff</code> to change where results go.
+ */
+public final class Benchmarks
+{
+    private static final String DEFAULT_RESULT = "jmh-result.json";
+
+    private Benchmarks()
+    {
+    }
+
+    public static void main(String[] args)
+    throws CommandLineOptionException, RunnerException
+    {
+        final CommandLineOptions cli = new CommandLineOptions(args);
+        final OptionsBuilder options = new OptionsBuilder();
+        options.parent(cli);
+        if (cli.getProfilers().stream().noneMatch(p -> p.getKlass().equals(GCProfiler.class.getName())
+                || p.getKlass().equals("gc"))) {
+            options.addProfiler(GCProfiler.class);
+        }
+        options.resultFormat(cli.getResultFormat().orElse(ResultFormatType.JSON));
+        options.result(cli.getResult().orElse(DEFAULT_RESULT));
+        new Runner(options.build()).run();
+    }
+}
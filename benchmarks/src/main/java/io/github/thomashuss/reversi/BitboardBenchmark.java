@@ -0,0 +1,76 @@
+package io.github.thomashuss.reversi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation and flipping over every position in one phase of the suite.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitboardBenchmark
+{
+    @Param({"opening", "midgame", "endgame"})
+    public String phase;
+
+    private long[] own;
+    private long[] opp;
+    private long[] legal;
+
+    @Setup
+    public void setup()
+    {
+        final long[][] positions = Positions.of(phase);
+        own = new long[positions.length];
+        opp = new long[positions.length];
+        legal = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            own[i] = Positions.own(positions[i]);
+            opp[i] = Positions.opp(positions[i]);
+            legal[i] = Bitboard.moves(own[i], opp[i]);
+        }
+    }
+
+    /**
+     * Find the legal moves in each position.
+     */
+    @Benchmark
+    public long moves()
+    {
+        long result = 0;
+        for (int i = 0; i < own.length; i++) {
+            result ^= Bitboard.moves(own[i], opp[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Find the flipped pieces for every legal move in each position.
+     */
+    @Benchmark
+    public long flips()
+    {
+        long result = 0;
+        for (int i = 0; i < own.length; i++) {
+            for (long l = legal[i]; l != 0; l &= l - 1) {
+                result ^= Bitboard.flips(own[i], opp[i], Long.numberOfTrailingZeros(l));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.thomashuss.reversi;
+
+/**
+ * Fixed positions for the benchmarks, taken from seeded random games.  Each row holds the dark pieces, the
+ * light pieces and the color to move, which always has a legal move.
+ */
+final class Positions
+{
+    private static final long DARK = Reversi.DARK;
+    /**
+     * After 8 plies; 52 empty squares.
+     */
+    static final long[][] OPENING = {
+            {0x00001c1810000000L, 0x00100004080c0800L, DARK},
+            {0x000024001c100000L, 0x0000003e00040000L, DARK},
+            {0x00001000101c0000L, 0x0000087828000000L, DARK},
+            {0x0000000000142404L, 0x0000041818080800L, DARK},
+    };
+    /**
+     * After 28 plies; 32 empty squares.
+     */
+    static final long[][] MIDGAME = {
+            {0x00037d231024060cL, 0x003c005c0c181020L, DARK},
+            {0x0008267e78500600L, 0x01050100060c183aL, DARK},
+            {0x0000101478507810L, 0x0808e8e9860e0040L, DARK},
+            {0x004438f4405c0200L, 0x0008020a3f234500L, DARK},
+    };
+    /**
+     * After 48 plies; 12 empty squares.
+     */
+    static final long[][] ENDGAME = {
+            {0x0002170ebe3c003dL, 0xb8fce87041437f00L, DARK},
+            {0xc066fe068e5e2e00L, 0x000101f9712151dfL, DARK},
+            {0x07def6dbbac2f200L, 0x78010824443c0c24L, DARK},
+            {0x80f8d060585f5b7dL, 0x1d072f1f24202000L, DARK},
+    };
+
+    private Positions()
+    {
+    }
+
+    /**
+     * @param phase <code>opening</code>, <code>midgame</code> or <code>endgame</code>
+     */
+    static long[][] of(String phase)
+    {
+        return switch (phase) {
+            case "opening" -> OPENING;
+            case "midgame" -> MIDGAME;
+            case "endgame" -> ENDGAME;
+            default -> throw new IllegalArgumentException(phase);
+        };
+    }
+
+    static byte color(long[] position)
+    {
+        return (byte) position[2];
+    }
+
+    static long own(long[] position)
+    {
+        return position[2] == DARK ? position[0] : position[1];
+    }
+
+    static long opp(long[] position)
+    {
+        return position[2] == DARK ? position[1] : position[0];
+    }
+
+    /**
+     * @return the color which is not about to move
+     */
+    static byte other(long[] position)
+    {
+        return position[2] == DARK ? Reversi.LIGHT : Reversi.DARK;
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.thomashuss.reversi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solving the endgame positions exactly, starting from an empty transposition table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark
+{
+    private static final long TABLE_MEMORY = 1L << 20;
+
+    private TranspositionTable table;
+    private GameTree tree;
+    private EndgameSolver solver;
+
+    @Setup
+    public void setup()
+    {
+        table = new TranspositionTable(TABLE_MEMORY);
+        tree = new GameTree();
+        solver = new EndgameSolver(EndgameSolver.DEFAULT_EMPTIES, true, table);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable()
+    {
+        table.clear();
+    }
+
+    @Benchmark
+    public int solve()
+    {
+        int score = 0;
+        for (long[] p : Positions.ENDGAME) {
+            final int root = tree.reset(Positions.other(p), p[0], p[1]);
+            solver.search(Positions.color(p), tree, root);
+            score += tree.getScore(tree.getFirst(root));
+        }
+        return score;
+    }
+}
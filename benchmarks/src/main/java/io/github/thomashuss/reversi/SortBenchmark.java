@@ -0,0 +1,103 @@
+package io.github.thomashuss.reversi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintaining a cached game tree which is already expanded to the full depth below each position, and sorting
+ * the moves available in a position, the only children the tree keeps sorted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark
+{
+    @Param({"opening", "midgame"})
+    public String phase;
+
+    private GameTree tree;
+    private TreeSearch search;
+    private int[] roots;
+
+    @Setup
+    public void setup()
+    {
+        final long[][] positions = Positions.of(phase);
+        tree = new GameTree();
+        search = new TreeSearch(tree, new TranspositionTable(0));
+        roots = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            roots[i] = tree.allocate(1);
+            tree.set(roots[i], Positions.other(positions[i]), Bitboard.SQUARES, 0, positions[i][0], positions[i][1]);
+            search.think(roots[i], Positions.color(positions[i]), (byte) 0);
+        }
+    }
+
+    /**
+     * Walk a fully expanded tree below each position, re-scoring every node from its best reply without
+     * sorting the replies, then sort the moves available, as happens each turn for the parts of the tree which
+     * are already up to date.
+     */
+    @Benchmark
+    public int reconsider()
+    {
+        int score = 0;
+        for (int root : roots) {
+            final int first = tree.getFirst(root);
+            final int end = first + tree.getCount(root);
+            for (int n = first; n < end; n++) {
+                search.reconsider(n, 0);
+            }
+            tree.sortChildren(root);
+            score += tree.getScore(first);
+        }
+        return score;
+    }
+
+    /**
+     * Sort the moves available in each position when they are already in order, which is the usual case.
+     */
+    @Benchmark
+    public int sortSorted()
+    {
+        int score = 0;
+        for (int root : roots) {
+            tree.sortChildren(root);
+            score += tree.getScore(tree.getFirst(root));
+        }
+        return score;
+    }
+
+    /**
+     * Sort the moves available in each position after reversing their scores, which is the worst case.
+     */
+    @Benchmark
+    public int sortReversed()
+    {
+        int score = 0;
+        for (int root : roots) {
+            final int first = tree.getFirst(root);
+            final int end = first + tree.getCount(root);
+            for (int n = first; n < end; n++) {
+                tree.setScore(n, n - first);
+            }
+            tree.sortChildren(root);
+            score += tree.getScore(first);
+        }
+        return score;
+    }
+}
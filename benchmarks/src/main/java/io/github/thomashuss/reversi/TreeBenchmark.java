@@ -0,0 +1,66 @@
+package io.github.thomashuss.reversi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the cached game tree.  The transposition table is kept as small as it can be, so that every
+ * position is actually expanded rather than recalled from an earlier invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeBenchmark
+{
+    @Param({"opening", "midgame"})
+    public String phase;
+    /**
+     * Number of layers to generate below each position, counting the moves available in it.
+     */
+    @Param({"1", "2", "3", "4", "5"})
+    public int layers;
+
+    private long[][] positions;
+    private GameTree tree;
+    private TreeSearch search;
+
+    @Setup
+    public void setup()
+    {
+        final TranspositionTable table = new TranspositionTable(0);
+        positions = Positions.of(phase);
+        tree = new GameTree();
+        search = new TreeSearch(tree, table);
+    }
+
+    /**
+     * Generate and score <code>layers</code> layers of moves below each position.
+     *
+     * @return nodes generated
+     */
+    @Benchmark
+    public int expand()
+    {
+        int nodes = 0;
+        for (long[] p : positions) {
+            final int root = tree.reset(Positions.other(p), p[0], p[1]);
+            search.think(root, Positions.color(p), (byte) (TreeSearch.MAX_DEPTH - layers + 1));
+            nodes += tree.size();
+        }
+        return nodes;
+    }
+}
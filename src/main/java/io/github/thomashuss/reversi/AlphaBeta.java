@@ -0,0 +1,369 @@
+package io.github.thomashuss.reversi;
+
+/**
+ * Iteratively deepened negamax search with alpha-beta pruning.  {@link Reversi#computerPlay()} needs a score
+ * for every candidate, not just the best one, so each root move gets its own aspiration window around its
+ * score from the previous iteration, and is re-searched with a wider window only if it falls outside.
+ * Iterations go two plies at a time, so every one ends on the same side as the configured depth and scores
+ * stay comparable from turn to turn, unless the game ends sooner.  Deepening stops at the configured depth,
+ * when the game cannot last any longer, or when the time or node budget runs out; an iteration cut short is
+ * discarded in favor of the last complete one.  With a tolerance set, moves which cannot come within the
+ * tolerance of the best move are only bounded from above.  Results below the root are shared through a
+ * {@link TranspositionTable}, which makes the re-searches nearly free.  A stored score is only reused at
+ * exactly the depth it was searched to, because this evaluation swings with the parity of the horizon;
+ * entries from other depths still order moves.
+ * <p>
+ * Positions at the horizon are worth nothing beyond the pieces gained on the way there, unless an
+ * {@link Evaluator} is set, which is told about each move as it is made and taken back.
+ */
+class AlphaBeta
+        implements Engine
+{
+    static final int INFINITY = Short.MAX_VALUE;
+    private static final int MAX_MOVES = Bitboard.SQUARES;
+    private static final int ORDER_DEPTH = 5;
+    private static final int TABLE_DEPTH = 3;
+    private static final int CHECK_INTERVAL = 1024;
+    private static final int MIN_GROWTH = 2;
+    static final int DEFAULT_WINDOW = 2;
+
+    private final int depth;
+    private final int[][] order;
+    private final long[] rootOwn;
+    private final long[] rootOpp;
+    private final int[] rootGain;
+    private final int[] rootSquare;
+    private final long[] rootFlips;
+    private final int[] rootOrder;
+    private final int[][] rootScore;
+    private TranspositionTable table;
+    private Evaluator evaluator;
+    /**
+     * Key of <code>evaluator</code>, mixed into every key this search stores or probes.
+     */
+    private long salt;
+    private byte rootColor;
+    private CancelToken token = CancelToken.NEVER;
+    private int window = DEFAULT_WINDOW;
+    private int tolerance;
+    private long timeBudget;
+    private long nodeBudget;
+    private long deadline;
+    private long nodeLimit;
+    private boolean stopped;
+    private long nodes;
+
+    /**
+     * @param depth number of plies to search, counting the root move
+     */
+    AlphaBeta(int depth, TranspositionTable table)
+    {
+        if (depth < 1) throw new IllegalArgumentException();
+        this.depth = depth;
+        this.table = table;
+        order = new int[depth][MAX_MOVES];
+        rootOwn = new long[MAX_MOVES];
+        rootOpp = new long[MAX_MOVES];
+        rootGain = new int[MAX_MOVES];
+        rootSquare = new int[MAX_MOVES];
+        rootFlips = new long[MAX_MOVES];
+        rootOrder = new int[MAX_MOVES];
+        rootScore = new int[2][MAX_MOVES];
+    }
+
+    /**
+     * @param window    half-width of the initial window around each root move's guess, or 0 to search every
+     *                  root move with a full window
+     * @param tolerance a root move scoring more than this many points below the best root move gets an upper
+     *                  bound instead of an exact score; 0 scores every root move exactly
+     */
+    void setAspiration(int window, int tolerance)
+    {
+        if (window < 0 || tolerance < 0) throw new IllegalArgumentException();
+        this.window = window;
+        this.tolerance = tolerance;
+    }
+
+    void setTable(TranspositionTable table)
+    {
+        this.table = table;
+    }
+
+    /**
+     * @param evaluator evaluation for positions at the horizon, which is then used by this search alone, or
+     *                  null to count only the pieces gained
+     */
+    void setEvaluator(Evaluator evaluator)
+    {
+        this.evaluator = evaluator;
+        salt = evaluator == null ? 0 : evaluator.getKey();
+    }
+
+    /**
+     * Limit each search.  The first iteration is always searched in full; after that, deepening stops when
+     * either budget runs out or the next iteration is not expected to finish within the time left.
+     *
+     * @param millis wall-clock budget, or 0 for none
+     * @param nodes  node budget, or 0 for none
+     */
+    void setBudget(long millis, long nodes)
+    {
+        if (millis < 0 || nodes < 0) throw new IllegalArgumentException();
+        timeBudget = millis;
+        nodeBudget = nodes;
+    }
+
+    @Override
+    public void setToken(CancelToken token)
+    {
+        this.token = token;
+    }
+
+    long getNodes()
+    {
+        return nodes;
+    }
+
+    @Override
+    public int search(byte color, GameTree tree, int node)
+    {
+        final long dark = tree.getDark(node);
+        final long light = tree.getLight(node);
+        final long own = color == Reversi.DARK ? dark : light;
+        final long opp = color == Reversi.DARK ? light : dark;
+        final long legal = Bitboard.moves(own, opp);
+        final int maxDepth = Math.min(depth, Bitboard.SQUARES - Bitboard.count(own | opp));
+        final long start = System.nanoTime();
+        long flips, iterStart, now, iterTime, lastIterTime = 0;
+        int n = 0, i = 0, k = 0;
+        int[] scores = null;
+
+        for (long l = legal; l != 0; l &= l - 1) {
+            rootSquare[n] = Long.numberOfTrailingZeros(l);
+            rootFlips[n] = flips = Bitboard.flips(own, opp, rootSquare[n]);
+            rootOwn[n] = own | flips | (l & -l);
+            rootOpp[n] = opp & ~flips;
+            rootGain[n++] = Bitboard.count(flips) + 1;
+        }
+        if (n == 0) return 0;
+        rootColor = color;
+        if (evaluator != null) evaluator.setPosition(dark, light);
+
+        stopped = false;
+        deadline = nodeLimit = Long.MAX_VALUE;
+        for (int d = 2 - (depth & 1); ; d += 2, k++) {
+            d = Math.min(d, maxDepth);
+            iterStart = System.nanoTime();
+            if (!iterate(n, d, rootScore[k + 1 & 1], rootScore[k & 1])) break;
+            scores = rootScore[k & 1];
+            if (d == maxDepth) break;
+            if (k == 0) {
+                if (timeBudget != 0) deadline = start + timeBudget * 1_000_000;
+                if (nodeBudget != 0) nodeLimit = nodes + nodeBudget;
+            }
+            now = System.nanoTime();
+            iterTime = now - iterStart;
+            if (iterTime * Math.max(MIN_GROWTH, lastIterTime == 0 ? 0 : iterTime / lastIterTime) > deadline - now) {
+                break;
+            }
+            lastIterTime = Math.max(iterTime, 1);
+        }
+
+        final int first = tree.allocate(n);
+        for (long l = legal; l != 0; l &= l - 1, i++) {
+            final int sq = Long.numberOfTrailingZeros(l);
+            if (color == Reversi.DARK) tree.set(first + i, color, sq, rootGain[i], rootOwn[i], rootOpp[i]);
+            else tree.set(first + i, color, sq, rootGain[i], rootOpp[i], rootOwn[i]);
+            tree.setScore(first + i, scores[i]);
+        }
+        tree.setChildren(node, first, n);
+        tree.sortChildren(node);
+        return n;
+    }
+
+    /**
+     * Score all <code>n</code> root moves to <code>depth</code> plies.  Scores from the previous iteration
+     * serve as guesses and decide the order.  The last iteration may be a single ply deeper than the previous
+     * one, when the end of the game is that close.
+     *
+     * @return false if the budget ran out first
+     */
+    private boolean iterate(int n, int depth, int[] guesses, int[] scores)
+    {
+        final boolean aspirate = window != 0 && depth > 2;
+        int i, j, best = -INFINITY;
+
+        for (i = 0; i < n; i++) {
+            for (j = i; j > 0 && aspirate && guesses[rootOrder[j - 1]] < guesses[i]; j--) {
+                rootOrder[j] = rootOrder[j - 1];
+            }
+            rootOrder[j] = i;
+        }
+
+        for (j = 0; j < n; j++) {
+            i = rootOrder[j];
+            scores[i] = aspirate
+                    ? aspirate(i, depth, guesses[i], tolerance == 0 || j == 0 ? -INFINITY : best - tolerance)
+                    : searchRoot(i, depth, -INFINITY, INFINITY);
+            if (stopped) return false;
+            best = Math.max(best, scores[i]);
+        }
+        return true;
+    }
+
+    private int searchRoot(int i, int depth, int alpha, int beta)
+    {
+        final int gain = rootGain[i];
+        if (evaluator != null) evaluator.play(rootColor, rootSquare[i], rootFlips[i]);
+        final int score = gain - negamax(rootOpp[i], rootOwn[i], Reversi.otherColor(rootColor), depth - 1,
+                gain - beta, gain - alpha);
+        if (evaluator != null) evaluator.undo(rootColor, rootSquare[i], rootFlips[i]);
+        return score;
+    }
+
+    /**
+     * Search root move <code>i</code> in a narrow window around its guess, doubling the window on the side
+     * it fails until the score is exact or known to be no better than <code>floor</code>.
+     *
+     * @return exact score, or an upper bound no greater than <code>floor</code>
+     */
+    private int aspirate(int i, int depth, int guess, int floor)
+    {
+        int alpha = Math.max(guess - window, floor), beta = Math.max(guess + window, alpha + 1), widen = window;
+        int score;
+
+        while (true) {
+            score = searchRoot(i, depth, alpha, beta);
+            if (stopped) return score;
+            if (score <= alpha) {
+                if (alpha == floor) return score;
+                widen <<= 1;
+                beta = score + 1;
+                alpha = Math.max(score - widen, floor);
+            } else if (score >= beta) {
+                widen <<= 1;
+                alpha = score - 1;
+                beta = Math.min(score + widen, INFINITY);
+            } else return score;
+        }
+    }
+
+    /**
+     * @param own   pieces belonging to the color to move
+     * @param opp   pieces belonging to the other color
+     * @param color color to move
+     * @param depth remaining plies
+     * @return best score for the color to move, exact if it lies strictly between <code>alpha</code> and
+     * <code>beta</code>, otherwise a bound on the exact score
+     */
+    private int negamax(long own, long opp, byte color, int depth, int alpha, int beta)
+    {
+        if ((++nodes & (CHECK_INTERVAL - 1)) == 0) {
+            token.check();
+            if (nodes >= nodeLimit || System.nanoTime() >= deadline) stopped = true;
+        }
+        if (stopped) return 0;
+        if (depth == 0) return evaluator == null ? 0 : evaluator.evaluate(color, own, opp);
+        final long legal = Bitboard.moves(own, opp);
+        if (legal == 0) {
+            if (Bitboard.moves(opp, own) == 0) return 0;
+            return -negamax(opp, own, Reversi.otherColor(color), depth, -beta, -alpha);
+        }
+        if (depth == 1 && evaluator == null) return bestGain(own, opp, legal);
+
+        final TranspositionTable table = depth >= TABLE_DEPTH ? this.table : null;
+        final int alphaOrig = alpha;
+        long key = 0, entry;
+        int hint = TranspositionTable.NO_MOVE;
+        if (table != null) {
+            key = Zobrist.hash(own, opp) ^ salt;
+            entry = table.probe(key, depth);
+            if (entry != 0) {
+                if (TranspositionTable.depth(entry) == depth) {
+                    final int score = TranspositionTable.score(entry);
+                    switch (TranspositionTable.bound(entry)) {
+                        case TranspositionTable.EXACT:
+                            return score;
+                        case TranspositionTable.LOWER:
+                            if (score >= beta) return score;
+                            break;
+                        case TranspositionTable.UPPER:
+                            if (score <= alpha) return score;
+                            break;
+                    }
+                }
+                hint = TranspositionTable.move(entry);
+            }
+        }
+
+        final int[] buf = order[depth];
+        final int n = order(own, opp, legal, depth, hint, buf);
+        int best = -INFINITY, bestSq = TranspositionTable.NO_MOVE, sq, gain, score;
+        long flips;
+
+        for (int i = 0; i < n; i++) {
+            sq = buf[i] & 0xff;
+            flips = Bitboard.flips(own, opp, sq);
+            gain = Bitboard.count(flips) + 1;
+            if (evaluator != null) evaluator.play(color, sq, flips);
+            score = gain - negamax(opp & ~flips, own | flips | (1L << sq), Reversi.otherColor(color), depth - 1,
+                    gain - beta, gain - alpha);
+            if (evaluator != null) evaluator.undo(color, sq, flips);
+            if (stopped) return 0;
+            if (score > best) {
+                best = score;
+                bestSq = sq;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) break;
+                }
+            }
+        }
+        if (table != null) {
+            table.store(key, depth, best, best <= alphaOrig ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT, bestSq);
+        }
+        return best;
+    }
+
+    private static int bestGain(long own, long opp, long legal)
+    {
+        int best = 0;
+        for (; legal != 0; legal &= legal - 1) {
+            best = Math.max(best, Bitboard.count(Bitboard.flips(own, opp, Long.numberOfTrailingZeros(legal))));
+        }
+        return best + 1;
+    }
+
+    /**
+     * Fill <code>buf</code> with the legal moves, most promising first.  The best move from an earlier search
+     * goes first; the rest are keyed on the pieces they gain and, far from the horizon, the opponent's best
+     * immediate reply is subtracted as well.
+     *
+     * @return number of moves
+     */
+    private int order(long own, long opp, long legal, int depth, int hint, int[] buf)
+    {
+        int n = 0, sq, key, entry, j;
+        long flips, newOwn, newOpp;
+
+        for (; legal != 0; legal &= legal - 1) {
+            sq = Long.numberOfTrailingZeros(legal);
+            flips = Bitboard.flips(own, opp, sq);
+            key = Bitboard.count(flips) + 1;
+            if (depth >= ORDER_DEPTH) {
+                newOwn = own | flips | (1L << sq);
+                newOpp = opp & ~flips;
+                final long replies = Bitboard.moves(newOpp, newOwn);
+                if (replies != 0) key -= bestGain(newOpp, newOwn, replies);
+            }
+            if (sq == hint) key = Bitboard.SQUARES;
+            entry = key << 8 | sq;
+            for (j = n++; j > 0 && buf[j - 1] < entry; j--) {
+                buf[j] = buf[j - 1];
+            }
+            buf[j] = entry;
+        }
+        return n;
+    }
+}
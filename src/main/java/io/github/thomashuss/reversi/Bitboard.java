@@ -0,0 +1,181 @@
+package io.github.thomashuss.reversi;
+
+/**
+ * Helpers for boards stored as one 64-bit set per color.  Square <code>row * 8 + col</code> maps to bit
+ * <code>row * 8 + col</code>, so a1 is bit 0 and h8 is bit 63.
+ */
+final class Bitboard
+{
+    static final long NOT_A_FILE = 0xfefefefefefefefeL;
+    static final long NOT_H_FILE = 0x7f7f7f7f7f7f7f7fL;
+    static final int DIRECTIONS = 8;
+    static final int SQUARES = 64;
+    private static final long INNER_FILES = NOT_A_FILE & NOT_H_FILE;
+    /**
+     * <code>RAYS[sq &lt;&lt; 3 | dir]</code> holds every square strictly beyond <code>sq</code> in direction
+     * <code>dir</code>, up to the edge of the board.
+     */
+    private static final long[] RAYS = new long[SQUARES * DIRECTIONS];
+
+    static {
+        long b;
+        for (int sq = 0; sq < SQUARES; sq++) {
+            for (int dir = 0; dir < DIRECTIONS; dir++) {
+                b = shift(1L << sq, dir);
+                while (b != 0) {
+                    RAYS[sq << 3 | dir] |= b;
+                    b = shift(b, dir);
+                }
+            }
+        }
+    }
+
+    private Bitboard()
+    {
+    }
+
+    static int square(int row, int col)
+    {
+        return row * Reversi.COLS + col;
+    }
+
+    static long bit(int row, int col)
+    {
+        return 1L << square(row, col);
+    }
+
+    static int count(long b)
+    {
+        return Long.bitCount(b);
+    }
+
+    /**
+     * @return <code>b</code> upside down, with row 1 swapped for row 8 and so on
+     */
+    static long flipVertical(long b)
+    {
+        return Long.reverseBytes(b);
+    }
+
+    /**
+     * @return <code>b</code> mirrored, with file a swapped for file h and so on
+     */
+    static long mirrorHorizontal(long b)
+    {
+        b = (b >>> 1) & 0x5555555555555555L | (b & 0x5555555555555555L) << 1;
+        b = (b >>> 2) & 0x3333333333333333L | (b & 0x3333333333333333L) << 2;
+        return (b >>> 4) & 0x0f0f0f0f0f0f0f0fL | (b & 0x0f0f0f0f0f0f0f0fL) << 4;
+    }
+
+    /**
+     * @return <code>b</code> flipped about the a1-h8 diagonal, with b1 swapped for a2 and so on
+     */
+    static long flipDiagonal(long b)
+    {
+        long t;
+        t = 0x0f0f0f0f00000000L & (b ^ b << 28);
+        b ^= t ^ t >>> 28;
+        t = 0x3333000033330000L & (b ^ b << 14);
+        b ^= t ^ t >>> 14;
+        t = 0x5500550055005500L & (b ^ b << 7);
+        return b ^ t ^ t >>> 7;
+    }
+
+    /**
+     * Shift every square in <code>b</code> one step in the given direction, dropping squares which would wrap
+     * around an edge.
+     *
+     * @param b   set of squares
+     * @param dir direction, 0 through 7, clockwise from up
+     * @return shifted set
+     */
+    static long shift(long b, int dir)
+    {
+        return switch (dir) {
+            case 0 -> b >>> 8;
+            case 1 -> (b >>> 7) & NOT_A_FILE;
+            case 2 -> (b << 1) & NOT_A_FILE;
+            case 3 -> (b << 9) & NOT_A_FILE;
+            case 4 -> b << 8;
+            case 5 -> (b << 7) & NOT_H_FILE;
+            case 6 -> (b >>> 1) & NOT_H_FILE;
+            case 7 -> (b >>> 9) & NOT_H_FILE;
+            default -> throw new IllegalArgumentException();
+        };
+    }
+
+    /**
+     * Find every legal move for one side at once.
+     *
+     * @param own pieces belonging to the color to move
+     * @param opp pieces belonging to the other color
+     * @return set of legal squares
+     */
+    static long moves(long own, long opp)
+    {
+        final long inner = opp & INNER_FILES;
+        return (fillUp(own, opp, 8) | fillDown(own, opp, 8)
+                | fillUp(own, inner, 1) | fillDown(own, inner, 1)
+                | fillUp(own, inner, 7) | fillDown(own, inner, 7)
+                | fillUp(own, inner, 9) | fillDown(own, inner, 9)) & ~(own | opp);
+    }
+
+    /**
+     * Kogge-Stone fill from <code>own</code> through runs of <code>pro</code> toward higher squares, shifted one
+     * step past the end of each run.  Wrapping is prevented by keeping the edge files out of <code>pro</code>
+     * for every direction but a straight vertical.
+     */
+    private static long fillDown(long own, long pro, int d)
+    {
+        long gen = own;
+        gen |= pro & (gen << d);
+        pro &= pro << d;
+        gen |= pro & (gen << 2 * d);
+        pro &= pro << 2 * d;
+        gen |= pro & (gen << 4 * d);
+        return (gen & ~own) << d;
+    }
+
+    private static long fillUp(long own, long pro, int d)
+    {
+        long gen = own;
+        gen |= pro & (gen >>> d);
+        pro &= pro >>> d;
+        gen |= pro & (gen >>> 2 * d);
+        pro &= pro >>> 2 * d;
+        gen |= pro & (gen >>> 4 * d);
+        return (gen & ~own) >>> d;
+    }
+
+    /**
+     * Find the pieces which would be flipped by placing a piece on <code>sq</code>.  Only the nearest
+     * square in each ray which does not hold an opposing piece matters; if it holds one of ours, every square
+     * before it is flipped.
+     *
+     * @param own pieces belonging to the color to move
+     * @param opp pieces belonging to the other color
+     * @param sq  square to play
+     * @return flipped pieces, or 0 if the move is illegal
+     */
+    static long flips(long own, long opp, int sq)
+    {
+        final int base = sq << 3;
+        long flips = 0, ray, stop;
+
+        // right, down-right, down and down-left run toward higher squares
+        for (int dir = 2; dir < 6; dir++) {
+            ray = RAYS[base | dir];
+            stop = ray & ~opp;
+            stop &= -stop;
+            if ((stop & own) != 0) flips |= ray & (stop - 1);
+        }
+
+        // left, up-left, up and up-right run toward lower squares
+        for (int dir = 6; dir < 10; dir++) {
+            ray = RAYS[base | (dir & 7)];
+            stop = Long.highestOneBit(ray & ~opp);
+            if ((stop & own) != 0) flips |= ray & -(stop << 1);
+        }
+        return flips;
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.thomashuss.reversi;
+
+/**
+ * Lets another thread stop a search in progress.  The search checks the token every so many nodes and gives
+ * up as soon as it finds it cancelled, so cancelling takes effect within a fraction of a millisecond.  A token
+ * can also carry a deadline, after which it counts as cancelled on its own.  Once cancelled, a token stays
+ * cancelled; use a new one for each search.
+ */
+public final class CancelToken
+{
+    /**
+     * Token which is never cancelled, for searches nobody can stop.
+     */
+    static final CancelToken NEVER = new CancelToken();
+
+    private final boolean timed;
+    private final long deadline;
+    private volatile boolean cancelled;
+
+    public CancelToken()
+    {
+        timed = false;
+        deadline = 0;
+    }
+
+    /**
+     * @param millis time from now after which the token counts as cancelled
+     */
+    public CancelToken(long millis)
+    {
+        if (millis < 0) throw new IllegalArgumentException();
+        timed = true;
+        deadline = System.nanoTime() + millis * 1_000_000;
+    }
+
+    /**
+     * Stop whatever search is using the token.  May be called from any thread.
+     */
+    public void cancel()
+    {
+        if (this != NEVER) cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled || (timed && System.nanoTime() - deadline >= 0);
+    }
+
+    /**
+     * Throw {@link SearchCancelled} if the token has been cancelled.
+     */
+    void check()
+    {
+        if (isCancelled()) throw SearchCancelled.INSTANCE;
+    }
+}
@@ -1,5 +1,9 @@
 package io.github.thomashuss.reversi;
 
+/**
+ * Thrown by {@link Reversi#think} when neither color can move.  It carries no stack trace, since it reports
+ * the end of the game rather than an error.
+ */
 public class Endgame
         extends Exception
 {
@@ -8,6 +12,7 @@ public class Endgame
 
     public Endgame(int darkScore, int lightScore)
     {
+        super(null, null, false, false);
         this.darkScore = darkScore;
         this.lightScore = lightScore;
     }
@@ -0,0 +1,265 @@
+package io.github.thomashuss.reversi;
+
+/**
+ * Searches the rest of the game exactly once few enough squares are empty.  Moves are scored by the final
+ * difference in pieces from the mover's point of view, or in win/draw/loss mode only by its sign, which is
+ * much cheaper to prove.  Moves into regions with an odd number of empty squares are tried first, and far
+ * from the end moves which leave the opponent the fewest replies go first.  The last three empty squares are
+ * handled without generating move lists, and nothing is allocated below the root.
+ */
+class EndgameSolver
+        implements Engine
+{
+    static final int DEFAULT_EMPTIES = 14;
+    private static final int INFINITY = Bitboard.SQUARES + 1;
+    private static final int FASTEST_FIRST = 7;
+    private static final int TABLE_EMPTIES = 9;
+    private static final int CHECK_INTERVAL = 1024;
+    private static final long[] QUADRANTS = {
+            0x000000000f0f0f0fL, 0x00000000f0f0f0f0L, 0x0f0f0f0f00000000L, 0xf0f0f0f000000000L
+    };
+
+    private final int empties;
+    private final boolean exact;
+    private final int[][] order;
+    private TranspositionTable table;
+    private CancelToken token = CancelToken.NEVER;
+    private long nodes;
+
+    /**
+     * @param empties solve positions with at most this many empty squares
+     * @param exact   score by final piece difference rather than just win, draw or loss
+     * @param table   shared table, or null
+     */
+    EndgameSolver(int empties, boolean exact, TranspositionTable table)
+    {
+        if (empties < 1 || empties > Bitboard.SQUARES) throw new IllegalArgumentException();
+        this.empties = empties;
+        this.exact = exact;
+        this.table = table;
+        order = new int[empties + 1][Bitboard.SQUARES];
+    }
+
+    void setTable(TranspositionTable table)
+    {
+        this.table = table;
+    }
+
+    @Override
+    public void setToken(CancelToken token)
+    {
+        this.token = token;
+    }
+
+    long getNodes()
+    {
+        return nodes;
+    }
+
+    boolean canSolve(long dark, long light)
+    {
+        return Bitboard.SQUARES - Bitboard.count(dark | light) <= empties;
+    }
+
+    @Override
+    public int search(byte color, GameTree tree, int node)
+    {
+        final long own = color == Reversi.DARK ? tree.getDark(node) : tree.getLight(node);
+        final long opp = color == Reversi.DARK ? tree.getLight(node) : tree.getDark(node);
+        final long legal = Bitboard.moves(own, opp);
+        final int n = Bitboard.count(legal);
+        if (n == 0) return 0;
+        final int first = tree.allocate(n);
+        long flips, newOwn, newOpp;
+        int sq, gain, m = first;
+
+        for (long l = legal; l != 0; l &= l - 1, m++) {
+            sq = Long.numberOfTrailingZeros(l);
+            flips = Bitboard.flips(own, opp, sq);
+            gain = Bitboard.count(flips) + 1;
+            newOwn = own | flips | (1L << sq);
+            newOpp = opp & ~flips;
+            if (color == Reversi.DARK) tree.set(m, color, sq, gain, newOwn, newOpp);
+            else tree.set(m, color, sq, gain, newOpp, newOwn);
+            tree.setScore(m, solveAfter(newOwn, newOpp));
+        }
+        tree.setChildren(node, first, n);
+        tree.sortChildren(node);
+        return n;
+    }
+
+    /**
+     * @param tree tree holding the move
+     * @param m    a move whose resulting position has no more than the configured number of empty squares
+     * @return score of <code>m</code> for the color which played it
+     */
+    int solveAfter(GameTree tree, int m)
+    {
+        return tree.getWhoseTurn(m) == Reversi.DARK ? solveAfter(tree.getDark(m), tree.getLight(m))
+                : solveAfter(tree.getLight(m), tree.getDark(m));
+    }
+
+    /**
+     * @param own pieces belonging to the color which just moved
+     * @param opp pieces belonging to the color to move
+     */
+    private int solveAfter(long own, long opp)
+    {
+        final int score = exact ? -solve(opp, own, -INFINITY, INFINITY, false) : -solve(opp, own, -1, 1, false);
+        return exact ? score : Integer.signum(score);
+    }
+
+    /**
+     * @param passed whether the other color has just passed in this same position
+     * @return final piece difference for the color to move, exact if it lies strictly between
+     * <code>alpha</code> and <code>beta</code>, otherwise a bound on it
+     */
+    private int solve(long own, long opp, int alpha, int beta, boolean passed)
+    {
+        final long empty = ~(own | opp);
+        final int n = Bitboard.count(empty);
+        if (n <= 3) {
+            return switch (n) {
+                case 0 -> Bitboard.count(own) - Bitboard.count(opp);
+                case 1 -> last1(own, opp, Long.numberOfTrailingZeros(empty));
+                default -> solveLast(own, opp, empty, n, alpha, beta, passed);
+            };
+        }
+
+        if ((++nodes & (CHECK_INTERVAL - 1)) == 0) token.check();
+        final long legal = Bitboard.moves(own, opp);
+        if (legal == 0) {
+            if (passed) return Bitboard.count(own) - Bitboard.count(opp);
+            return -solve(opp, own, -beta, -alpha, true);
+        }
+
+        final TranspositionTable table = n >= TABLE_EMPTIES ? this.table : null;
+        final int alphaOrig = alpha;
+        long key = 0, entry;
+        int hint = TranspositionTable.NO_MOVE;
+        if (table != null) {
+            key = Zobrist.hash(own, opp);
+            entry = table.probe(key, TranspositionTable.SOLVED);
+            if (entry != 0) {
+                if (TranspositionTable.depth(entry) == TranspositionTable.SOLVED) {
+                    final int score = TranspositionTable.score(entry);
+                    switch (TranspositionTable.bound(entry)) {
+                        case TranspositionTable.EXACT:
+                            return score;
+                        case TranspositionTable.LOWER:
+                            if (score >= beta) return score;
+                            break;
+                        case TranspositionTable.UPPER:
+                            if (score <= alpha) return score;
+                            break;
+                    }
+                }
+                hint = TranspositionTable.move(entry);
+            }
+        }
+
+        final int[] buf = order[n];
+        final int count = order(own, opp, legal, empty, n, hint, buf);
+        int best = -INFINITY, bestSq = TranspositionTable.NO_MOVE, sq, score;
+        long flips;
+
+        for (int i = 0; i < count; i++) {
+            sq = buf[i] & 0xff;
+            flips = Bitboard.flips(own, opp, sq);
+            score = -solve(opp & ~flips, own | flips | (1L << sq), -beta, -alpha, false);
+            if (score > best) {
+                best = score;
+                bestSq = sq;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) break;
+                }
+            }
+        }
+        if (table != null) {
+            table.store(key, TranspositionTable.SOLVED, best, best <= alphaOrig ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT, bestSq);
+        }
+        return best;
+    }
+
+    /**
+     * Two or three empty squares: try each directly, lone squares in their quadrant first.
+     */
+    private int solveLast(long own, long opp, long empty, int n, int alpha, int beta, boolean passed)
+    {
+        nodes++;
+        final long odd = oddQuadrants(empty);
+        int best = -INFINITY, score;
+        long flips, bit, rest;
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (long e = pass == 0 ? empty & odd : empty & ~odd; e != 0; e &= e - 1) {
+                bit = e & -e;
+                flips = Bitboard.flips(own, opp, Long.numberOfTrailingZeros(e));
+                if (flips == 0) continue;
+                rest = empty & ~bit;
+                score = n == 2 ? -last1(opp & ~flips, own | flips | bit, Long.numberOfTrailingZeros(rest))
+                        : -solveLast(opp & ~flips, own | flips | bit, rest, 2, -beta, -alpha, false);
+                if (score > best) {
+                    best = score;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) return best;
+                    }
+                }
+            }
+        }
+        if (best == -INFINITY) {
+            if (passed) return Bitboard.count(own) - Bitboard.count(opp);
+            return -solveLast(opp, own, empty, n, -beta, -alpha, true);
+        }
+        return best;
+    }
+
+    /**
+     * One empty square: whoever can take it does, the color to move first.
+     */
+    private int last1(long own, long opp, int sq)
+    {
+        nodes++;
+        final int diff = Bitboard.count(own) - Bitboard.count(opp);
+        int flipped = Bitboard.count(Bitboard.flips(own, opp, sq));
+        if (flipped != 0) return diff + 2 * flipped + 1;
+        flipped = Bitboard.count(Bitboard.flips(opp, own, sq));
+        if (flipped != 0) return diff - 2 * flipped - 1;
+        return diff;
+    }
+
+    private int order(long own, long opp, long legal, long empty, int n, int hint, int[] buf)
+    {
+        final long odd = oddQuadrants(empty);
+        int count = 0, sq, key, entry, j;
+        long flips;
+
+        for (; legal != 0; legal &= legal - 1) {
+            sq = Long.numberOfTrailingZeros(legal);
+            key = (odd & (legal & -legal)) != 0 ? 1 : 0;
+            if (n > FASTEST_FIRST) {
+                flips = Bitboard.flips(own, opp, sq);
+                key -= Bitboard.count(Bitboard.moves(opp & ~flips, own | flips | (1L << sq))) << 1;
+            }
+            if (sq == hint) key = Bitboard.SQUARES;
+            entry = key << 8 | sq;
+            for (j = count++; j > 0 && buf[j - 1] < entry; j--) {
+                buf[j] = buf[j - 1];
+            }
+            buf[j] = entry;
+        }
+        return count;
+    }
+
+    private static long oddQuadrants(long empty)
+    {
+        long odd = 0;
+        for (long q : QUADRANTS) {
+            if ((Bitboard.count(empty & q) & 1) != 0) odd |= q;
+        }
+        return odd;
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.thomashuss.reversi;
+
+/**
+ * Scores the moves available in a position without keeping a game tree between turns.
+ */
+interface Engine
+{
+    /**
+     * Score every legal move for <code>color</code>.  Scores follow the same convention as the cached game
+     * tree: pieces gained by the move, minus the opponent's best reply, and so on down to the search horizon.
+     *
+     * The moves are stored in <code>tree</code> as the children of <code>node</code>, best first, and are not
+     * expanded any further.
+     *
+     * @param color color to move
+     * @param tree  tree holding the position
+     * @param node  node whose board is to be searched
+     * @return number of legal moves; if 0, <code>color</code> has to pass and <code>node</code> is left untouched
+     */
+    int search(byte color, GameTree tree, int node);
+
+    /**
+     * Stop searches with <code>token</code> from now on.  A stopped search throws {@link SearchCancelled},
+     * leaving whatever it had stored under <code>node</code> so far.
+     */
+    default void setToken(CancelToken token)
+    {
+    }
+
+    /**
+     * Score the moves available after <code>node</code> was played, as the game tree would: those of the other
+     * color, or if it has to pass, those of the color which played <code>node</code>, which is then marked as
+     * skipping.
+     *
+     * @return number of moves; if 0, the game is over
+     */
+    default int searchAfter(GameTree tree, int node)
+    {
+        final byte color = tree.getWhoseTurn(node);
+        int n = search(color == Reversi.DARK ? Reversi.LIGHT : Reversi.DARK, tree, node);
+        if (n == 0 && (n = search(color, tree, node)) != 0) tree.setSkipNext(node);
+        return n;
+    }
+}
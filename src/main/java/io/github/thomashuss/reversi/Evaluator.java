@@ -0,0 +1,42 @@
+package io.github.thomashuss.reversi;
+
+/**
+ * Scores positions at the horizon of alpha-beta search, on top of the pieces gained on the way there.  The
+ * search tells the evaluator about every move it makes and takes back, so that an evaluator can keep what it
+ * needs up to date as it goes instead of working it out afresh at each leaf.
+ */
+interface Evaluator
+{
+    /**
+     * Start over from the given position.
+     */
+    void setPosition(long dark, long light);
+
+    /**
+     * Play a move on the position.
+     *
+     * @param color color making the move
+     * @param sq    square played
+     * @param flips pieces flipped by the move
+     */
+    void play(byte color, int sq, long flips);
+
+    /**
+     * Take back the last move given to {@link #play} which has not been taken back yet.
+     */
+    void undo(byte color, int sq, long flips);
+
+    /**
+     * @param color color to move in the current position
+     * @param own   pieces of the color to move
+     * @param opp   pieces of the other color
+     * @return how much better the position is for the color to move, in pieces
+     */
+    int evaluate(byte color, long own, long opp);
+
+    /**
+     * @return key mixed into transposition table keys, so that scores worked out with different evaluations,
+     * or with none, are never taken for one another
+     */
+    long getKey();
+}
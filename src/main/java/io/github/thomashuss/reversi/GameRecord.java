@@ -0,0 +1,146 @@
+package io.github.thomashuss.reversi;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * One game from the initial position, as stored by {@link GameRecordWriter}: which color the human played,
+ * the rubberbanding sensitivity, the final score and one byte per move.  Each move is its square, with a1 as
+ * 0 and h8 as 63, or {@link #PASS} where a color had to pass, so that the turn order can be read off the
+ * record without generating moves.
+ * <p>
+ * In a file, each record is a frame of its own:
+ * <pre>
+ *  u16  length of the rest of the frame
+ *  u8   color played by the human, or 0 if none
+ *  u8   dark pieces at the end
+ *  u8   light pieces at the end
+ *  f32  alpha
+ *  u8[] moves
+ * </pre>
+ * All values are big-endian.  The file starts with {@link #MAGIC}.
+ */
+public final class GameRecord
+{
+    /**
+     * First four bytes of a game record file.
+     */
+    static final int MAGIC = 0x52564731;
+    /**
+     * Bytes in a frame before the moves, counting the length.
+     */
+    static final int FRAME_HEADER = 9;
+    /**
+     * Marks a pass in the moves.
+     */
+    public static final byte PASS = (byte) Bitboard.SQUARES;
+    /**
+     * Most moves a record can hold.  A game has at most 60 moves, and a pass is always followed by a move.
+     */
+    public static final int MAX_MOVES = 2 * (Bitboard.SQUARES - 4);
+
+    private final byte humanColor;
+    private final float alpha;
+    private final int darkScore;
+    private final int lightScore;
+    private final byte[] moves;
+
+    /**
+     * @param humanColor color played by the human, or 0 if none
+     * @param alpha      rubberbanding sensitivity
+     * @param darkScore  dark pieces at the end of the game
+     * @param lightScore light pieces at the end of the game
+     * @param moves      squares played, and {@link #PASS} for each pass, in order; copied
+     */
+    public GameRecord(byte humanColor, double alpha, int darkScore, int lightScore, byte[] moves)
+    {
+        if (humanColor < 0 || humanColor > Reversi.LIGHT || darkScore < 0 || lightScore < 0
+                || darkScore + lightScore > Bitboard.SQUARES || moves.length > MAX_MOVES) {
+            throw new IllegalArgumentException();
+        }
+        for (final byte move : moves) {
+            if (move < 0 || move > PASS) throw new IllegalArgumentException();
+        }
+        this.humanColor = humanColor;
+        this.alpha = (float) alpha;
+        this.darkScore = darkScore;
+        this.lightScore = lightScore;
+        this.moves = moves.clone();
+    }
+
+    public byte getHumanColor()
+    {
+        return humanColor;
+    }
+
+    public double getAlpha()
+    {
+        return alpha;
+    }
+
+    public int getDarkScore()
+    {
+        return darkScore;
+    }
+
+    public int getLightScore()
+    {
+        return lightScore;
+    }
+
+    /**
+     * @return number of moves, counting passes
+     */
+    public int getMoveCount()
+    {
+        return moves.length;
+    }
+
+    /**
+     * @return square of the <code>i</code>th move, or {@link #PASS}
+     */
+    public int getMove(int i)
+    {
+        return moves[Objects.checkIndex(i, moves.length)];
+    }
+
+    /**
+     * @return size of the record's frame in a file
+     */
+    int getFrameLength()
+    {
+        return FRAME_HEADER + moves.length;
+    }
+
+    byte[] getMoves()
+    {
+        return moves;
+    }
+
+    /**
+     * Play the game over again on <code>engine</code>, from the initial position.
+     *
+     * @return whether every move was legal
+     */
+    public boolean replay(ReversiEngine engine)
+    {
+        engine.reset();
+        for (final byte sq : moves) {
+            if (sq != PASS && !engine.play(sq / Reversi.COLS, sq % Reversi.COLS)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        return o instanceof GameRecord r && humanColor == r.humanColor && alpha == r.alpha
+                && darkScore == r.darkScore && lightScore == r.lightScore && Arrays.equals(moves, r.moves);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(moves) * 31 + darkScore * 65 + lightScore;
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.thomashuss.reversi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Reads a file of {@link GameRecord}s by mapping it into memory, a window at a time, so that scanning it runs
+ * at the speed of the disk or the page cache.  The reader moves from frame to frame with {@link #next} and
+ * reads the current frame where it lies, allocating nothing unless it is asked for a {@link GameRecord}.  A
+ * frame left incomplete at the end of the file is treated as the end.
+ * <p>
+ * Usage: <code>GameRecordReader [-replay] file...</code> prints totals for each file, and with
+ * <code>-replay</code> also plays every game over to check that its moves are legal.
+ */
+public final class GameRecordReader
+        implements Closeable
+{
+    private static final long WINDOW = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer map;
+    /**
+     * Offset in the file of the start of <code>map</code>.
+     */
+    private long base;
+    /**
+     * Offset in the file just past the last frame read.
+     */
+    private long offset;
+    /**
+     * Offset in <code>map</code> of the current frame, or -1 before the first.
+     */
+    private int frame = -1;
+    private int moveCount;
+
+    public GameRecordReader(Path path)
+    throws IOException
+    {
+        channel = FileChannel.open(path);
+        try {
+            size = channel.size();
+            map(0);
+            if (size < Integer.BYTES || map.getInt(0) != GameRecord.MAGIC) {
+                throw new IOException("Not a game record file: " + path);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        offset = Integer.BYTES;
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return whether there was one; if not, the reader stays on the last record
+     */
+    public boolean next()
+    throws IOException
+    {
+        if (size - offset < 2) return false;
+        if (offset + 2 > base + map.limit()) map(offset);
+        final int length = map.getShort((int) (offset - base)) & 0xffff;
+        final int moves = length + 2 - GameRecord.FRAME_HEADER;
+        if (moves < 0 || moves > GameRecord.MAX_MOVES || offset + 2 + length > size) return false;
+        if (offset + 2 + length > base + map.limit()) map(offset);
+        frame = (int) (offset - base);
+        moveCount = moves;
+        offset += 2 + length;
+        return true;
+    }
+
+    public byte getHumanColor()
+    {
+        return map.get(current() + 2);
+    }
+
+    public int getDarkScore()
+    {
+        return map.get(current() + 3) & 0xff;
+    }
+
+    public int getLightScore()
+    {
+        return map.get(current() + 4) & 0xff;
+    }
+
+    public double getAlpha()
+    {
+        return map.getFloat(current() + 5);
+    }
+
+    public int getMoveCount()
+    {
+        current();
+        return moveCount;
+    }
+
+    /**
+     * @return square of the <code>i</code>th move of the current record, or {@link GameRecord#PASS}
+     */
+    public int getMove(int i)
+    {
+        return map.get(current() + GameRecord.FRAME_HEADER + Objects.checkIndex(i, moveCount));
+    }
+
+    /**
+     * @return a copy of the current record
+     */
+    public GameRecord getRecord()
+    {
+        final byte[] moves = new byte[getMoveCount()];
+        map.get(frame + GameRecord.FRAME_HEADER, moves);
+        return new GameRecord(getHumanColor(), getAlpha(), getDarkScore(), getLightScore(), moves);
+    }
+
+    /**
+     * @return offset in the file just past the last record read
+     */
+    long getOffset()
+    {
+        return offset;
+    }
+
+    @Override
+    public void close()
+    throws IOException
+    {
+        channel.close();
+    }
+
+    private int current()
+    {
+        if (frame < 0) throw new IllegalStateException();
+        return frame;
+    }
+
+    private void map(long from)
+    throws IOException
+    {
+        base = from;
+        map = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(WINDOW, size - from));
+    }
+
+    public static void main(String[] args)
+    throws IOException
+    {
+        final boolean replay = args.length > 0 && args[0].equals("-replay");
+        final ReversiEngine engine = replay ? new ReversiEngine() : null;
+        for (int a = replay ? 1 : 0; a < args.length; a++) {
+            final long start = System.nanoTime();
+            long games = 0, moves = 0, darkWins = 0, lightWins = 0, humanWins = 0, illegal = 0;
+            try (GameRecordReader reader = new GameRecordReader(Path.of(args[a]))) {
+                while (reader.next()) {
+                    final int dark = reader.getDarkScore();
+                    final int light = reader.getLightScore();
+                    final byte human = reader.getHumanColor();
+                    games++;
+                    moves += reader.getMoveCount();
+                    if (dark > light) darkWins++;
+                    else if (light > dark) lightWins++;
+                    if (human == Reversi.DARK ? dark > light : human == Reversi.LIGHT && light > dark) humanWins++;
+                    if (replay && !reader.getRecord().replay(engine)) illegal++;
+                }
+                final double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(args[a] + ": " + games + " games, " + moves + " moves, dark won " + darkWins
+                        + ", light won " + lightWins + ", drawn " + (games - darkWins - lightWins)
+                        + ", human won " + humanWins + (replay ? ", illegal " + illegal : "")
+                        + String.format(", %.1f MB/s", reader.getOffset() / 1e6 / seconds));
+            }
+        }
+    }
+}
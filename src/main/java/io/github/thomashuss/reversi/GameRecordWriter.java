@@ -0,0 +1,108 @@
+package io.github.thomashuss.reversi;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends {@link GameRecord}s to a file, buffering them so that each costs a copy of a few dozen bytes rather
+ * than a system call.  Records reach the file once the buffer fills, on {@link #flush} and on {@link #close}.
+ * Only one writer may have a file open at a time.
+ */
+public final class GameRecordWriter
+        implements Closeable, Flushable
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * Open <code>path</code> for appending, creating it if need be.  A frame left incomplete at the end of the
+     * file, as by a crash partway through a write, is cut off first, and so is a magic number cut short by a
+     * crash before anything else was written.
+     */
+    public GameRecordWriter(Path path)
+    throws IOException
+    {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < Integer.BYTES) {
+                if (!isMagicPrefix()) throw new IOException("Not a game record file: " + path);
+                channel.truncate(0);
+                buffer.putInt(GameRecord.MAGIC);
+            } else {
+                final long end;
+                try (GameRecordReader reader = new GameRecordReader(path)) {
+                    while (reader.next()) {
+                        // skip to the end of the last whole frame
+                    }
+                    end = reader.getOffset();
+                }
+                if (end < channel.size()) channel.truncate(end);
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void write(GameRecord record)
+    throws IOException
+    {
+        final int length = record.getFrameLength();
+        if (buffer.remaining() < length) drain();
+        buffer.putShort((short) (length - 2))
+                .put(record.getHumanColor())
+                .put((byte) record.getDarkScore())
+                .put((byte) record.getLightScore())
+                .putFloat((float) record.getAlpha())
+                .put(record.getMoves());
+    }
+
+    @Override
+    public void flush()
+    throws IOException
+    {
+        drain();
+    }
+
+    @Override
+    public void close()
+    throws IOException
+    {
+        try (channel) {
+            drain();
+        }
+    }
+
+    private void drain()
+    throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * @return whether the file, shorter than the magic number, holds its first bytes
+     */
+    private boolean isMagicPrefix()
+    throws IOException
+    {
+        final ByteBuffer head = ByteBuffer.allocate(Integer.BYTES);
+        while (channel.read(head, head.position()) > 0) {
+            // read the whole file, which is only a few bytes
+        }
+        for (int i = 0; i < head.position(); i++) {
+            if (head.get(i) != (byte) (GameRecord.MAGIC >>> 8 * (Integer.BYTES - 1 - i))) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.thomashuss.reversi;
+
+import java.util.Objects;
+
+/**
+ * Immutable picture of a game at one moment: the board, the color to move, the last move and the scores from
+ * the last search of the position, if it has been searched.  Snapshots are published through a volatile
+ * reference as the game changes, so any thread can read a consistent one without taking a lock or waiting
+ * for a search.
+ * <p>
+ * Moves are encoded as by {@link Reversi#computerPlay}; use {@link Reversi#getRow} and {@link Reversi#getCol}
+ * to decode them.
+ */
+public final class GameSnapshot
+{
+    private final long dark;
+    private final long light;
+    private final byte color;
+    private final int lastMove;
+    private final int[] squares;
+    private final int[] scores;
+
+    /**
+     * @param color    color to move, or 0 if the game is over
+     * @param lastMove square of the move leading to the position, or -1 if it was set up directly
+     * @param squares  squares of the moves available, best first; not copied
+     * @param scores   scores of those moves; not copied
+     */
+    GameSnapshot(long dark, long light, byte color, int lastMove, int[] squares, int[] scores)
+    {
+        this.dark = dark;
+        this.light = light;
+        this.color = color;
+        this.lastMove = lastMove;
+        this.squares = squares;
+        this.scores = scores;
+    }
+
+    public long getDark()
+    {
+        return dark;
+    }
+
+    public long getLight()
+    {
+        return light;
+    }
+
+    public byte at(int row, int col)
+    {
+        final long b = Bitboard.bit(row, col);
+        return (dark & b) != 0 ? Reversi.DARK : (light & b) != 0 ? Reversi.LIGHT : 0;
+    }
+
+    public int getDarkCount()
+    {
+        return Bitboard.count(dark);
+    }
+
+    public int getLightCount()
+    {
+        return Bitboard.count(light);
+    }
+
+    /**
+     * @return color about to play, after any pass, or 0 if the game is over
+     */
+    public byte getColor()
+    {
+        return color;
+    }
+
+    /**
+     * @return the move leading to the position, or -1 if there was none
+     */
+    public long getLastMove()
+    {
+        return lastMove < 0 ? -1 : Reversi.encode(lastMove / Reversi.COLS, lastMove % Reversi.COLS);
+    }
+
+    /**
+     * @return number of scored moves; 0 until the position has been searched
+     */
+    public int getMoveCount()
+    {
+        return squares.length;
+    }
+
+    /**
+     * @param i rank of the move, 0 for the best
+     */
+    public long getMove(int i)
+    {
+        final int sq = squares[Objects.checkIndex(i, squares.length)];
+        return Reversi.encode(sq / Reversi.COLS, sq % Reversi.COLS);
+    }
+
+    /**
+     * @param i rank of the move, 0 for the best
+     */
+    public int getScore(int i)
+    {
+        return scores[Objects.checkIndex(i, scores.length)];
+    }
+}
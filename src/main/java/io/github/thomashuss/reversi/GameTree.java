@@ -0,0 +1,516 @@
+package io.github.thomashuss.reversi;
+
+import java.util.Arrays;
+
+/**
+ * Game tree kept in flat parallel arrays rather than as one object per move.  A node is an index into the
+ * arrays; the children of a node are stored next to each other, so a node only needs the index of its first
+ * child and the number of children.  Nodes are handed out from the front of the arrays and never freed one at
+ * a time: the whole tree is either reset or compacted down to the subtree which is still reachable, after
+ * which the arrays are reused, so a tree of steady size allocates nothing.
+ * <p>
+ * A node represents the position after a move.  Its color is the color which made the move, except for the
+ * root of a fresh tree, which carries the color that is <em>not</em> about to move.
+ */
+final class GameTree
+{
+    static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final int NODE_BYTES = 2 * Long.BYTES + 2 * Integer.BYTES + 4;
+    /**
+     * Bytes held by a new or released tree.
+     */
+    static final long INITIAL_MEMORY = (long) INITIAL_CAPACITY * NODE_BYTES;
+    private static final byte COLOR = 0x03;
+    private static final byte SKIP = 0x04;
+    private static final byte EXPANDED = 0x08;
+    private static final byte EVICTED = 0x10;
+
+    private long[] dark;
+    private long[] light;
+    private int[] score;
+    private int[] first;
+    private byte[] gain;
+    private byte[] square;
+    private byte[] flags;
+    private byte[] count;
+    private int size;
+    /**
+     * Tree which {@link #compact} copies into before swapping arrays with it; made on first use.
+     */
+    private GameTree spare;
+    /**
+     * Binary heap of nodes for {@link #prune}, each packed with its distance from the principal line above it.
+     */
+    private long[] heap = new long[64];
+
+    GameTree()
+    {
+        this(INITIAL_CAPACITY);
+    }
+
+    private GameTree(int capacity)
+    {
+        init(capacity);
+    }
+
+    private void init(int capacity)
+    {
+        dark = new long[capacity];
+        light = new long[capacity];
+        score = new int[capacity];
+        first = new int[capacity];
+        gain = new byte[capacity];
+        square = new byte[capacity];
+        flags = new byte[capacity];
+        count = new byte[capacity];
+    }
+
+    /**
+     * @return number of nodes in use
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return number of nodes which fit before the arrays have to grow
+     */
+    int capacity()
+    {
+        return score.length;
+    }
+
+    /**
+     * @return bytes held by the arrays, including those of the tree used by {@link #compact}
+     */
+    long getMemory()
+    {
+        return (long) capacity() * NODE_BYTES + (spare == null ? 0 : spare.getMemory());
+    }
+
+    /**
+     * Discard every node and give back the memory the arrays have grown to.
+     */
+    void release()
+    {
+        init(INITIAL_CAPACITY);
+        size = 0;
+        spare = null;
+        heap = new long[64];
+    }
+
+    /**
+     * Discard every node from index <code>size</code> on, such as a subtree which was the last thing
+     * allocated.  Nodes which still refer to the discarded ones must not be used again.
+     */
+    void truncate(int size)
+    {
+        this.size = size;
+    }
+
+    /**
+     * Start a fresh tree holding only the given position.
+     *
+     * @param color color which is <em>not</em> about to move
+     * @return the root node
+     */
+    int reset(byte color, long dark, long light)
+    {
+        size = 0;
+        final int root = allocate(1);
+        set(root, color, Bitboard.SQUARES, 0, dark, light);
+        return root;
+    }
+
+    /**
+     * Reserve <code>n</code> consecutive nodes.  Their contents are undefined until {@link #set} is called.
+     *
+     * @return index of the first node
+     */
+    int allocate(int n)
+    {
+        final int start = size;
+        if (start + n > score.length) grow(start + n);
+        size = start + n;
+        return start;
+    }
+
+    /**
+     * Fill in a node made by playing <code>sq</code>.  It starts out unexpanded, with its gain as its score.
+     */
+    void set(int node, byte color, int sq, int gain, long dark, long light)
+    {
+        this.dark[node] = dark;
+        this.light[node] = light;
+        this.score[node] = gain;
+        this.first[node] = 0;
+        this.gain[node] = (byte) gain;
+        this.square[node] = (byte) sq;
+        this.flags[node] = color;
+        this.count[node] = 0;
+    }
+
+    long getDark(int node)
+    {
+        return dark[node];
+    }
+
+    long getLight(int node)
+    {
+        return light[node];
+    }
+
+    int getScore(int node)
+    {
+        return score[node];
+    }
+
+    void setScore(int node, int score)
+    {
+        this.score[node] = score;
+    }
+
+    /**
+     * @return pieces gained by the move alone, including the piece placed
+     */
+    int getGain(int node)
+    {
+        return gain[node];
+    }
+
+    /**
+     * @return square played to reach the node
+     */
+    int getSquare(int node)
+    {
+        return square[node];
+    }
+
+    byte getWhoseTurn(int node)
+    {
+        return (byte) (flags[node] & COLOR);
+    }
+
+    boolean shouldSkipNext(int node)
+    {
+        return (flags[node] & SKIP) != 0;
+    }
+
+    void setSkipNext(int node)
+    {
+        flags[node] |= SKIP;
+    }
+
+    /**
+     * @return whether {@link #prune} dropped the children of <code>node</code>, leaving its score as it was
+     */
+    boolean isEvicted(int node)
+    {
+        return (flags[node] & EVICTED) != 0;
+    }
+
+    /**
+     * @return whether the children of <code>node</code> have been generated; an expanded node without
+     * children ends the game
+     */
+    boolean isExpanded(int node)
+    {
+        return (flags[node] & EXPANDED) != 0;
+    }
+
+    int getFirst(int node)
+    {
+        return first[node];
+    }
+
+    int getCount(int node)
+    {
+        return count[node];
+    }
+
+    /**
+     * Mark <code>node</code> as expanded with the given block of children.
+     */
+    void setChildren(int node, int first, int count)
+    {
+        this.first[node] = first;
+        this.count[node] = (byte) count;
+        flags[node] = (byte) (flags[node] & ~EVICTED | EXPANDED);
+    }
+
+    /**
+     * @return the child of <code>node</code> made by playing <code>sq</code>, or {@link #NONE}
+     */
+    int find(int node, int sq)
+    {
+        final int start = first[node];
+        final int end = start + count[node];
+        for (int i = start; i < end; i++) {
+            if (square[i] == sq) return i;
+        }
+        return NONE;
+    }
+
+    /**
+     * @return the first of the children of <code>node</code> with the highest score, which is the one
+     * {@link #sortChildren} would put first
+     */
+    int bestChild(int node)
+    {
+        final int start = first[node];
+        final int end = start + count[node];
+        int best = start;
+        for (int i = start + 1; i < end; i++) {
+            if (score[i] > score[best]) best = i;
+        }
+        return best;
+    }
+
+    /**
+     * Sort the children of <code>node</code> best first.  The sort is stable, and since children are usually
+     * sorted already, insertion sort does little more than one pass.
+     */
+    void sortChildren(int node)
+    {
+        final int start = first[node];
+        final int end = start + count[node];
+        long d, l;
+        int s, f, j;
+        byte g, sq, fl, c;
+
+        for (int i = start + 1; i < end; i++) {
+            s = score[i];
+            if (score[i - 1] >= s) continue;
+            d = dark[i];
+            l = light[i];
+            f = first[i];
+            g = gain[i];
+            sq = square[i];
+            fl = flags[i];
+            c = count[i];
+            j = i;
+            do {
+                move(j - 1, j);
+            } while (--j > start && score[j - 1] < s);
+            dark[j] = d;
+            light[j] = l;
+            score[j] = s;
+            first[j] = f;
+            gain[j] = g;
+            square[j] = sq;
+            flags[j] = fl;
+            count[j] = c;
+        }
+    }
+
+    private void move(int from, int to)
+    {
+        dark[to] = dark[from];
+        light[to] = light[from];
+        score[to] = score[from];
+        first[to] = first[from];
+        gain[to] = gain[from];
+        square[to] = square[from];
+        flags[to] = flags[from];
+        count[to] = count[from];
+    }
+
+    /**
+     * Cut the subtree under <code>node</code> down to about <code>budget</code> nodes and compact it.  Nodes are
+     * kept best first by their distance from the principal line: each step down costs the rank of the child
+     * among its siblings, plus one so that shallow nodes come before deep ones, so the children of each node are
+     * sorted as it is kept.  Children are kept or dropped all together, and a node whose children are dropped is
+     * left evicted, with the score it had.  The children of <code>node</code> itself are always kept.
+     *
+     * @return new index of <code>node</code>, which is always 0
+     */
+    int prune(int node, int budget)
+    {
+        int kept = 1 + count[node];
+        int heapSize = pushChildren(0, node, 0);
+        long top;
+        int n;
+
+        while (heapSize != 0) {
+            top = heap[0];
+            heap[0] = heap[--heapSize];
+            sift(heapSize);
+            n = (int) top;
+            if (kept + count[n] <= budget) {
+                kept += count[n];
+                heapSize = pushChildren(heapSize, n, (int) (top >>> 32));
+            } else {
+                first[n] = 0;
+                count[n] = 0;
+                flags[n] = (byte) (flags[n] & ~(EXPANDED | SKIP) | EVICTED);
+            }
+        }
+        return compact(node);
+    }
+
+    /**
+     * Push the children of <code>node</code> which have children of their own onto the heap.
+     *
+     * @param distance distance of <code>node</code> from the principal line
+     * @return new size of the heap
+     */
+    private int pushChildren(int heapSize, int node, int distance)
+    {
+        sortChildren(node);
+        final int start = first[node];
+        final int end = start + count[node];
+        for (int c = start; c < end; c++) {
+            if ((flags[c] & EXPANDED) != 0 && count[c] != 0) heapSize = push(heapSize, c, distance + c - start + 1);
+        }
+        return heapSize;
+    }
+
+    private int push(int heapSize, int node, int distance)
+    {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize << 1);
+        final long entry = (long) distance << 32 | node;
+        int i = heapSize, parent;
+        while (i > 0 && heap[parent = (i - 1) >> 1] > entry) {
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+        return heapSize + 1;
+    }
+
+    private void sift(int heapSize)
+    {
+        if (heapSize == 0) return;
+        final long entry = heap[0];
+        int i = 0, child;
+        while ((child = 2 * i + 1) < heapSize) {
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= entry) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = entry;
+    }
+
+    /**
+     * Throw away everything outside the subtree under <code>node</code> and move that subtree to the front of
+     * the arrays, breadth first, so that children stay together.  Takes time in proportion to the size of the
+     * subtree, not of the whole tree.
+     *
+     * @return new index of <code>node</code>, which is always 0
+     */
+    int compact(int node)
+    {
+        if (spare == null) spare = new GameTree(capacity());
+        spare.copyOf(this, node);
+        swap(spare);
+        return 0;
+    }
+
+    /**
+     * Replace this tree with a copy of the subtree under <code>node</code> in another tree.
+     *
+     * @return index of the copy of <code>node</code>, which is always 0
+     */
+    int copyOf(GameTree from, int node)
+    {
+        size = 0;
+        copySubtree(from, node, allocate(1));
+        return 0;
+    }
+
+    /**
+     * Overwrite <code>node</code> with a copy of the subtree under <code>src</code> in another tree.  The
+     * descendants are added at the end; whatever used to hang below <code>node</code> stays in the arrays
+     * until the next {@link #compact}.
+     */
+    void graft(int node, GameTree from, int src)
+    {
+        copySubtree(from, src, node);
+    }
+
+    private void copySubtree(GameTree from, int src, int dest)
+    {
+        int scan = size;
+        copyNode(from, src, dest);
+        copyChildren(from, dest);
+        for (; scan < size; scan++) {
+            copyChildren(from, scan);
+        }
+    }
+
+    /**
+     * Copy the children of a node just copied from <code>from</code>, whose first child still refers to
+     * <code>from</code>, to the end of this tree.
+     */
+    private void copyChildren(GameTree from, int node)
+    {
+        final int n = count[node];
+        if (n == 0) return;
+        final int src = first[node];
+        final int start = allocate(n);
+        first[node] = start;
+        for (int i = 0; i < n; i++) {
+            copyNode(from, src + i, start + i);
+        }
+    }
+
+    private void copyNode(GameTree from, int src, int dest)
+    {
+        dark[dest] = from.dark[src];
+        light[dest] = from.light[src];
+        score[dest] = from.score[src];
+        first[dest] = from.first[src];
+        gain[dest] = from.gain[src];
+        square[dest] = from.square[src];
+        flags[dest] = from.flags[src];
+        count[dest] = from.count[src];
+    }
+
+    private void swap(GameTree other)
+    {
+        long[] longs = dark;
+        dark = other.dark;
+        other.dark = longs;
+        longs = light;
+        light = other.light;
+        other.light = longs;
+        int[] ints = score;
+        score = other.score;
+        other.score = ints;
+        ints = first;
+        first = other.first;
+        other.first = ints;
+        byte[] bytes = gain;
+        gain = other.gain;
+        other.gain = bytes;
+        bytes = square;
+        square = other.square;
+        other.square = bytes;
+        bytes = flags;
+        flags = other.flags;
+        other.flags = bytes;
+        bytes = count;
+        count = other.count;
+        other.count = bytes;
+        final int n = size;
+        size = other.size;
+        other.size = n;
+    }
+
+    private void grow(int needed)
+    {
+        int capacity = score.length;
+        while (capacity < needed) capacity <<= 1;
+        dark = Arrays.copyOf(dark, capacity);
+        light = Arrays.copyOf(light, capacity);
+        score = Arrays.copyOf(score, capacity);
+        first = Arrays.copyOf(first, capacity);
+        gain = Arrays.copyOf(gain, capacity);
+        square = Arrays.copyOf(square, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        count = Arrays.copyOf(count, capacity);
+    }
+}
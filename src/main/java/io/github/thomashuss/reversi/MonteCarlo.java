@@ -0,0 +1,432 @@
+package io.github.thomashuss.reversi;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monte Carlo tree search: plays the position out to the end again and again with random moves, growing a
+ * tree from the root one node per playout along the lines which have done best so far.  At each node the
+ * search follows the move with the highest average result plus a bonus for being tried less often (UCT).  It
+ * can stop after any playout, so it runs until the time or playout budget runs out, and a playout budget caps
+ * its cost exactly.
+ * <p>
+ * A playout's result is the final difference in pieces for the color which made each move, so a move's score
+ * is the average margin of the playouts through it, on the same scale as the endgame solver's scores.  The
+ * move played out most often is taken as the best, and since a move tried only a few times can average more
+ * by luck, no move scores higher than it.
+ * <p>
+ * Playouts can run on several threads at once, all growing the same tree.  On its way down, a thread counts
+ * each node as visited and lost until its playout comes back, so that threads descending at the same time
+ * spread out over different lines instead of all following the most promising one.  Results then depend on
+ * how the threads interleave; with one thread, they are the same every time for the same position.
+ */
+final class MonteCarlo
+        implements Engine
+{
+    /**
+     * Playouts per search when neither budget is set.
+     */
+    static final int DEFAULT_PLAYOUTS = 20_000;
+    /**
+     * Weight of the bonus for moves tried less often, for results scaled to between -1 and 1.
+     */
+    private static final double EXPLORATION = 0.5;
+    /**
+     * Result a thread charges to each node on its way down, in pieces, and takes back once its playout is done.
+     */
+    private static final int VIRTUAL_LOSS = Bitboard.SQUARES;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int MAX_CAPACITY = 1 << 22;
+    private static final int CHECK_INTERVAL = 64;
+    private static final int UNEXPANDED = -1;
+    private static final int EXPANDING = -2;
+    private static final VarHandle INT = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONG = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Color which made the move leading to each node.
+     */
+    private byte[] color;
+    private byte[] square;
+    private byte[] count;
+    /**
+     * First child of each node, or <code>UNEXPANDED</code>, or <code>EXPANDING</code> while a thread generates
+     * its children.  Written last, so that a thread which reads an index here sees the children behind it.
+     */
+    private int[] first;
+    private int[] visits;
+    /**
+     * Sum of the results of the playouts through each node, for the color which made the move leading to it.
+     */
+    private long[] value;
+    private final AtomicInteger size = new AtomicInteger();
+    /**
+     * Whether a node could not be expanded for want of room, so the tree is to grow before the next search.
+     */
+    private volatile boolean full;
+    private final int[] order = new int[Bitboard.SQUARES];
+    private final List<Worker> workers = new ArrayList<>();
+    private final AtomicLong started = new AtomicLong();
+    private ForkJoinPool pool;
+    private CancelToken token = CancelToken.NEVER;
+    private long timeBudget;
+    private long playoutBudget;
+    private long limit;
+    private long minimum;
+    private long deadline;
+    private long rootDark;
+    private long rootLight;
+    private long playouts;
+
+    MonteCarlo()
+    {
+        allocate(INITIAL_CAPACITY);
+        workers.add(new Worker());
+    }
+
+    /**
+     * Limit each search.  Every move is played out at least once, however small the budget; after that, the
+     * search stops when either budget runs out.
+     *
+     * @param millis   wall-clock budget, or 0 for none
+     * @param playouts playout budget, or 0 for none; if both are 0, <code>DEFAULT_PLAYOUTS</code>
+     */
+    void setBudget(long millis, long playouts)
+    {
+        if (millis < 0 || playouts < 0) throw new IllegalArgumentException();
+        timeBudget = millis;
+        playoutBudget = playouts;
+    }
+
+    /**
+     * @param pool pool to run playouts on, one thread's worth per thread of the pool, or null to run them on
+     *             the thread calling {@link #search}
+     */
+    void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+        final int threads = pool == null ? 1 : pool.getParallelism();
+        while (workers.size() < threads) workers.add(new Worker());
+    }
+
+    @Override
+    public void setToken(CancelToken token)
+    {
+        this.token = token;
+    }
+
+    /**
+     * @return playouts made so far
+     */
+    long getPlayouts()
+    {
+        return playouts;
+    }
+
+    @Override
+    public int search(byte color, GameTree tree, int node)
+    {
+        final long dark = tree.getDark(node);
+        final long light = tree.getLight(node);
+        final long own = color == Reversi.DARK ? dark : light;
+        final long opp = color == Reversi.DARK ? light : dark;
+        final long legal = Bitboard.moves(own, opp);
+        final int n = Bitboard.count(legal);
+        if (n == 0) return 0;
+
+        if (full && this.color.length < MAX_CAPACITY) allocate(this.color.length << 1);
+        full = false;
+        rootDark = dark;
+        rootLight = light;
+        size.set(1);
+        clear(0, Reversi.otherColor(color));
+        expand(0, dark, light);
+        minimum = n;
+        limit = playoutBudget != 0 ? Math.max(playoutBudget, n) : timeBudget != 0 ? Long.MAX_VALUE
+                : Math.max(DEFAULT_PLAYOUTS, n);
+        deadline = System.nanoTime() + timeBudget * 1_000_000;
+        started.set(0);
+        final int threads = pool == null ? 1 : pool.getParallelism();
+        final long seed = Zobrist.hash(own, opp);
+        for (int i = 0; i < threads; i++) {
+            workers.get(i).seed(seed + i);
+        }
+
+        if (pool == null) run(workers.get(0));
+        else pool.invoke(new Playouts(workers, threads));
+        for (int i = 0; i < threads; i++) {
+            playouts += workers.get(i).playouts;
+            workers.get(i).playouts = 0;
+        }
+        // threads stop on their own when cancelled, so that none is still running once this returns
+        token.check();
+
+        final int f = first[0];
+        int i, j;
+        for (i = 0; i < n; i++) {
+            for (j = i; j > 0 && visits[f + order[j - 1]] < visits[f + i]; j--) {
+                order[j] = order[j - 1];
+            }
+            order[j] = i;
+        }
+        final int best = mean(f + order[0]);
+        final int children = tree.allocate(n);
+        for (i = 0; i < n; i++) {
+            final int c = f + order[i];
+            final int sq = square[c];
+            final long flips = Bitboard.flips(own, opp, sq);
+            final long newOwn = own | flips | (1L << sq);
+            final long newOpp = opp & ~flips;
+            if (color == Reversi.DARK) tree.set(children + i, color, sq, Bitboard.count(flips) + 1, newOwn, newOpp);
+            else tree.set(children + i, color, sq, Bitboard.count(flips) + 1, newOpp, newOwn);
+            tree.setScore(children + i, Math.min(mean(c), best));
+        }
+        tree.setChildren(node, children, n);
+        tree.sortChildren(node);
+        return n;
+    }
+
+    /**
+     * Make playouts until the budget runs out or the search is cancelled.
+     */
+    private void run(Worker worker)
+    {
+        long k;
+        while ((k = started.getAndIncrement()) < limit) {
+            if (k >= minimum && timeBudget != 0 && System.nanoTime() - deadline >= 0) return;
+            if ((worker.playouts & (CHECK_INTERVAL - 1)) == 0 && token.isCancelled()) return;
+            playout(worker);
+            worker.playouts++;
+        }
+    }
+
+    /**
+     * Descend from the root by UCT, expand the first node reached which has not been expanded yet, play the
+     * game out from there at random, and add the result to every node on the way.
+     */
+    private void playout(Worker worker)
+    {
+        final int[] path = worker.path;
+        long dark = rootDark, light = rootLight, flips;
+        int node = 0, depth = 0, f, sq;
+        boolean expanded = false;
+
+        INT.getAndAdd(visits, 0, 1);
+        while (true) {
+            f = (int) INT.getAcquire(first, node);
+            if (f < 0) {
+                if (expanded || !INT.compareAndSet(first, node, UNEXPANDED, EXPANDING)) break;
+                f = expand(node, dark, light);
+                if (f < 0) break;
+                expanded = true;
+            }
+            if (count[node] == 0) break;
+            node = select(node, f);
+            path[depth++] = node;
+            sq = square[node];
+            if (color[node] == Reversi.DARK) {
+                flips = Bitboard.flips(dark, light, sq);
+                dark |= flips | (1L << sq);
+                light &= ~flips;
+            } else {
+                flips = Bitboard.flips(light, dark, sq);
+                light |= flips | (1L << sq);
+                dark &= ~flips;
+            }
+        }
+
+        final int margin = worker.play(dark, light, Reversi.otherColor(color[node]));
+        for (int i = 0; i < depth; i++) {
+            node = path[i];
+            LONG.getAndAdd(value, node, (long) (color[node] == Reversi.DARK ? margin : -margin) + VIRTUAL_LOSS);
+        }
+    }
+
+    /**
+     * Pick the child of <code>node</code> with the highest upper confidence bound, the first one never
+     * visited if there is one, and charge it a virtual loss.
+     */
+    private int select(int node, int f)
+    {
+        final int end = f + count[node];
+        final double log = Math.log(Math.max((int) INT.getOpaque(visits, node), 1));
+        double bound, bestBound = Double.NEGATIVE_INFINITY;
+        int best = f, n;
+        for (int c = f; c < end; c++) {
+            n = (int) INT.getOpaque(visits, c);
+            if (n == 0) {
+                best = c;
+                break;
+            }
+            bound = (long) LONG.getOpaque(value, c) / ((double) n * Bitboard.SQUARES)
+                    + EXPLORATION * Math.sqrt(log / n);
+            if (bound > bestBound) {
+                bestBound = bound;
+                best = c;
+            }
+        }
+        INT.getAndAdd(visits, best, 1);
+        LONG.getAndAdd(value, best, (long) -VIRTUAL_LOSS);
+        return best;
+    }
+
+    /**
+     * Generate the children of <code>node</code>, which this thread has claimed: the moves of the other color,
+     * or if it has to pass, of the color which made the move leading to <code>node</code>.  If there is no
+     * room for them, <code>node</code> is left unexpanded.
+     *
+     * @return first child, or a negative number if there was no room
+     */
+    private int expand(int node, long dark, long light)
+    {
+        byte mover = Reversi.otherColor(color[node]);
+        long legal = mover == Reversi.DARK ? Bitboard.moves(dark, light) : Bitboard.moves(light, dark);
+        if (legal == 0) {
+            mover = color[node];
+            legal = mover == Reversi.DARK ? Bitboard.moves(dark, light) : Bitboard.moves(light, dark);
+        }
+        final int n = Bitboard.count(legal);
+        int f = 0;
+        // once full, stop claiming room, so that the size cannot wrap around
+        if (n != 0 && (full || (f = size.getAndAdd(n)) + n > this.color.length)) {
+            full = true;
+            INT.setRelease(first, node, UNEXPANDED);
+            return UNEXPANDED;
+        }
+        for (int c = f; legal != 0; legal &= legal - 1, c++) {
+            clear(c, mover);
+            square[c] = (byte) Long.numberOfTrailingZeros(legal);
+        }
+        count[node] = (byte) n;
+        INT.setRelease(first, node, f);
+        return f;
+    }
+
+    private void clear(int node, byte mover)
+    {
+        color[node] = mover;
+        count[node] = 0;
+        first[node] = UNEXPANDED;
+        visits[node] = 0;
+        value[node] = 0;
+    }
+
+    /**
+     * @return average result of the playouts through <code>node</code>, rounded to the nearest piece
+     */
+    private int mean(int node)
+    {
+        return visits[node] == 0 ? 0 : (int) Math.round((double) value[node] / visits[node]);
+    }
+
+    private void allocate(int capacity)
+    {
+        color = new byte[capacity];
+        square = new byte[capacity];
+        count = new byte[capacity];
+        first = new int[capacity];
+        visits = new int[capacity];
+        value = new long[capacity];
+    }
+
+    /**
+     * What one thread needs to make playouts: where it has been on the way down, and its own random numbers.
+     */
+    private static final class Worker
+    {
+        private final int[] path = new int[Bitboard.SQUARES + 1];
+        private long state;
+        private long playouts;
+
+        void seed(long seed)
+        {
+            // xorshift never leaves 0
+            state = seed == 0 ? 1 : seed;
+        }
+
+        /**
+         * Play the game out with random moves, <code>mover</code> first.
+         *
+         * @return final number of dark pieces, less light pieces
+         */
+        int play(long dark, long light, byte mover)
+        {
+            long own = mover == Reversi.DARK ? dark : light;
+            long opp = mover == Reversi.DARK ? light : dark;
+            long legal, flips, t;
+            boolean passed = false;
+            int sq, r;
+
+            while (true) {
+                legal = Bitboard.moves(own, opp);
+                if (legal == 0) {
+                    if (passed) break;
+                    passed = true;
+                } else {
+                    passed = false;
+                    for (r = nextInt(Bitboard.count(legal)); r > 0; r--) {
+                        legal &= legal - 1;
+                    }
+                    sq = Long.numberOfTrailingZeros(legal);
+                    flips = Bitboard.flips(own, opp, sq);
+                    own |= flips | (1L << sq);
+                    opp &= ~flips;
+                }
+                t = own;
+                own = opp;
+                opp = t;
+                mover = Reversi.otherColor(mover);
+            }
+            final int diff = Bitboard.count(own) - Bitboard.count(opp);
+            return mover == Reversi.DARK ? diff : -diff;
+        }
+
+        private int nextInt(int bound)
+        {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            return (int) ((state >>> 33) * bound >>> 31);
+        }
+    }
+
+    /**
+     * Runs the first <code>n</code> workers at once, splitting the range in half until one is left.
+     */
+    private final class Playouts
+            extends RecursiveAction
+    {
+        private final List<Worker> workers;
+        private final int from;
+        private final int to;
+
+        Playouts(List<Worker> workers, int n)
+        {
+            this(workers, 0, n);
+        }
+
+        private Playouts(List<Worker> workers, int from, int to)
+        {
+            this.workers = workers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1) {
+                run(workers.get(from));
+            } else if (to > from) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new Playouts(workers, from, mid), new Playouts(workers, mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package io.github.thomashuss.reversi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Scores for every position up to some number of plies from the start, worked out ahead of time so that the
+ * game tree can recall them instead of expanding the opening afresh in every game.  For each position, the
+ * book holds the score of the best move as the game tree would work it out looking 2 through
+ * <code>MAX_DEPTH</code> plies ahead, so the tree scores moves exactly as it would without the book, only
+ * without expanding them.
+ * <p>
+ * Positions are folded under the eight symmetries of the board and kept sorted in a file, which is mapped into
+ * memory and binary searched, so a book costs next to no heap and may be shared by any number of engines and
+ * threads.  The file holds a header of four ints, the magic number, <code>MAX_DEPTH</code>, the number of
+ * plies and the number of entries, followed by the entries, each the pieces of the color to move and of the
+ * other color as longs and a short score for each depth from 2 up, padded to {@link #ENTRY_BYTES}.
+ * <p>
+ * Usage: <code>OpeningBook file [plies]</code> builds a book of the given depth, by default
+ * {@link #DEFAULT_PLIES}.
+ */
+public final class OpeningBook
+        implements Closeable
+{
+    public static final int DEFAULT_PLIES = 8;
+    /**
+     * Returned by {@link #probe} for a position the book does not have.
+     */
+    static final int MISSING = Integer.MIN_VALUE;
+    private static final int MAGIC = 0x52564231;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int ENTRY_BYTES = 3 * Long.BYTES;
+    /**
+     * Room for scores in an entry, of which the first <code>MAX_DEPTH - 1</code> are used.
+     */
+    private static final int SCORES = (ENTRY_BYTES - 2 * Long.BYTES) / Short.BYTES;
+    private static final int INITIAL_PIECES = 4;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int plies;
+    private final int count;
+
+    /**
+     * Map a book built by {@link #build} into memory.
+     */
+    public OpeningBook(Path path)
+    throws IOException
+    {
+        channel = FileChannel.open(path);
+        try {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Opening book too large: " + path);
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < HEADER_BYTES || map.getInt(0) != MAGIC) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            if (map.getInt(4) != TreeSearch.MAX_DEPTH) {
+                throw new IOException("Opening book was built for a different depth: " + path);
+            }
+            plies = map.getInt(8);
+            count = map.getInt(12);
+            if (size != HEADER_BYTES + (long) count * ENTRY_BYTES) {
+                throw new IOException("Truncated opening book: " + path);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of plies from the start which the book covers
+     */
+    public int getPlies()
+    {
+        return plies;
+    }
+
+    /**
+     * @return number of positions in the book, after folding symmetries
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * @param own       pieces of the color to move
+     * @param opp       pieces of the other color
+     * @param remaining plies to look ahead, from 2 through <code>MAX_DEPTH</code>
+     * @return score of the best move, as the game tree would work it out looking <code>remaining</code> plies
+     * ahead, or {@link #MISSING} if the book does not have the position
+     */
+    int probe(long own, long opp, int remaining)
+    {
+        if (Bitboard.count(own | opp) - INITIAL_PIECES > plies) return MISSING;
+        final int t = symmetry(own, opp);
+        final long canonOwn = transform(own, t);
+        final long canonOpp = transform(opp, t);
+        int low = 0, high = count - 1, mid, cmp, at;
+        while (low <= high) {
+            mid = (low + high) >>> 1;
+            at = HEADER_BYTES + mid * ENTRY_BYTES;
+            cmp = compare(map.getLong(at), map.getLong(at + Long.BYTES), canonOwn, canonOpp);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return map.getShort(at + 2 * Long.BYTES + (remaining - 2) * Short.BYTES);
+        }
+        return MISSING;
+    }
+
+    @Override
+    public void close()
+    throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Work out every position up to <code>plies</code> plies from the start and write them to
+     * <code>path</code>.
+     *
+     * @return number of positions written
+     */
+    public static int build(Path path, int plies)
+    throws IOException
+    {
+        if (plies < 0 || plies > Bitboard.SQUARES - INITIAL_PIECES) throw new IllegalArgumentException();
+        final Set<Position> seen = new HashSet<>();
+        collect(ReversiEngine.INITIAL_DARK, ReversiEngine.INITIAL_LIGHT, plies, seen);
+        final List<Position> positions = new ArrayList<>(seen);
+        positions.sort(null);
+        final int n = positions.size();
+        final short[] scores = new short[n * SCORES];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            final Position position = positions.get(i);
+            for (int remaining = 2; remaining <= TreeSearch.MAX_DEPTH; remaining++) {
+                scores[i * SCORES + remaining - 2] = (short) value(position.own, position.opp, remaining);
+            }
+        });
+
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            buffer.putInt(MAGIC).putInt(TreeSearch.MAX_DEPTH).putInt(plies).putInt(n);
+            for (int i = 0; i < n; i++) {
+                if (buffer.remaining() < ENTRY_BYTES) write(out, buffer);
+                final Position position = positions.get(i);
+                buffer.putLong(position.own).putLong(position.opp);
+                for (int d = 0; d < SCORES; d++) {
+                    buffer.putShort(scores[i * SCORES + d]);
+                }
+            }
+            write(out, buffer);
+        }
+        return n;
+    }
+
+    /**
+     * Add the position and everything reachable from it in <code>plies</code> plies to <code>seen</code>,
+     * skipping positions already there along with what follows them.  Positions in which the color to move
+     * has to pass are passed through without being added.
+     */
+    private static void collect(long own, long opp, int plies, Set<Position> seen)
+    {
+        long legal = Bitboard.moves(own, opp);
+        if (legal == 0) {
+            if (Bitboard.moves(opp, own) != 0) collect(opp, own, plies, seen);
+            return;
+        }
+        if (!seen.add(Position.of(own, opp)) || plies == 0) return;
+        long flips;
+        int sq;
+        for (; legal != 0; legal &= legal - 1) {
+            sq = Long.numberOfTrailingZeros(legal);
+            flips = Bitboard.flips(own, opp, sq);
+            collect(opp & ~flips, own | flips | (1L << sq), plies - 1, seen);
+        }
+    }
+
+    /**
+     * @param own       pieces of the color to move, which must have a move
+     * @param remaining plies to look ahead, at least 1
+     * @return score of the best move, worked out as {@link TreeSearch} does: the pieces a move gains, less
+     * the score of the best reply, or plus it if the reply is by the same color after a pass
+     */
+    static int value(long own, long opp, int remaining)
+    {
+        int best = Integer.MIN_VALUE, score, sq;
+        long flips, newOwn, newOpp;
+        for (long legal = Bitboard.moves(own, opp); legal != 0; legal &= legal - 1) {
+            sq = Long.numberOfTrailingZeros(legal);
+            flips = Bitboard.flips(own, opp, sq);
+            newOwn = own | flips | (1L << sq);
+            newOpp = opp & ~flips;
+            score = Bitboard.count(flips) + 1;
+            if (remaining > 1) {
+                if (Bitboard.moves(newOpp, newOwn) != 0) score -= value(newOpp, newOwn, remaining - 1);
+                else if (Bitboard.moves(newOwn, newOpp) != 0) score += value(newOwn, newOpp, remaining - 1);
+            }
+            if (score > best) best = score;
+        }
+        return best;
+    }
+
+    /**
+     * @return the symmetry which takes the position to the least of its eight forms, as for {@link #transform}
+     */
+    private static int symmetry(long own, long opp)
+    {
+        long leastOwn = own, leastOpp = opp, o, p;
+        int least = 0;
+        for (int t = 1; t < 8; t++) {
+            o = transform(own, t);
+            p = transform(opp, t);
+            if (compare(o, p, leastOwn, leastOpp) < 0) {
+                leastOwn = o;
+                leastOpp = p;
+                least = t;
+            }
+        }
+        return least;
+    }
+
+    /**
+     * @param t which symmetry, from 0 for none through 7; bit 0 mirrors, bit 1 flips upside down and bit 2
+     *          flips about the diagonal first
+     */
+    private static long transform(long b, int t)
+    {
+        if ((t & 4) != 0) b = Bitboard.flipDiagonal(b);
+        if ((t & 2) != 0) b = Bitboard.flipVertical(b);
+        if ((t & 1) != 0) b = Bitboard.mirrorHorizontal(b);
+        return b;
+    }
+
+    private static int compare(long own1, long opp1, long own2, long opp2)
+    {
+        final int cmp = Long.compareUnsigned(own1, own2);
+        return cmp != 0 ? cmp : Long.compareUnsigned(opp1, opp2);
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer)
+    throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) out.write(buffer);
+        buffer.clear();
+    }
+
+    public static void main(String[] args)
+    throws IOException
+    {
+        final int plies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLIES;
+        final long start = System.nanoTime();
+        final int n = build(Path.of(args[0]), plies);
+        System.out.printf("%d positions to %d plies in %.1f s%n", n, plies, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * A position folded to the least of its eight symmetries.
+     */
+    private static final class Position
+            implements Comparable<Position>
+    {
+        final long own;
+        final long opp;
+
+        private Position(long own, long opp)
+        {
+            this.own = own;
+            this.opp = opp;
+        }
+
+        static Position of(long own, long opp)
+        {
+            final int t = symmetry(own, opp);
+            return new Position(transform(own, t), transform(opp, t));
+        }
+
+        @Override
+        public int compareTo(Position o)
+        {
+            return compare(own, opp, o.own, o.opp);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof Position p && own == p.own && opp == p.opp;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(own * 31 + opp);
+        }
+    }
+}
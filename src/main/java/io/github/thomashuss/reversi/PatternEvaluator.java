@@ -0,0 +1,274 @@
+package io.github.thomashuss.reversi;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * Evaluates positions by looking up lines of squares in tables worked out ahead of time, plus mobility.  Each
+ * pattern is a fixed list of squares, and its state is the base-3 number with one digit per square: 0 for
+ * empty, 1 for dark and 2 for light.  The evaluator keeps the state of every pattern on the board up to date
+ * as moves are played and taken back, which only touches the patterns through the squares that changed, so a
+ * position costs one table lookup per pattern and two move generations.
+ * <p>
+ * The patterns are the four edges, the 3x3 square in each corner and the two long diagonals.  The tables hold
+ * the value of each state for dark, less its value for light, worked out from rules of thumb rather than
+ * fitted to games: corners are worth having, and so are edge pieces which can no longer be flipped; the
+ * squares next to an empty corner are a liability, and so is a line of pieces along a diagonal which lets the
+ * other color take the corner.  Values are kept in quarters of a piece and rounded toward zero at the end.
+ */
+final class PatternEvaluator
+        implements Evaluator
+{
+    private static final int SCALE = 4;
+    private static final int CORNER = 20;
+    private static final int X_SQUARE = -10;
+    private static final int C_SQUARE = -4;
+    /**
+     * Value of a square next to a corner of the same color.
+     */
+    private static final int GUARDED = 2;
+    private static final int STABLE = 4;
+    /**
+     * Value of a line of pieces running from an empty corner along a diagonal to a piece of the other color.
+     */
+    private static final int EXPOSED = -10;
+    private static final int MOBILITY = 2;
+    private static final long KEY = 0x9E3779B97F4A7C15L;
+
+    private static final int EDGE_SQUARES = 8;
+    private static final int CORNER_SQUARES = 9;
+    /**
+     * Offsets from the corner of the squares in a corner pattern: the corner, the two squares next to it along
+     * the edges, the square next to it diagonally, and then the rest.
+     */
+    private static final int[][] CORNER_OFFSETS = {{0, 0}, {0, 1}, {1, 0}, {1, 1}, {0, 2}, {2, 0}, {1, 2}, {2, 1},
+            {2, 2}};
+    private static final int[] EDGE = table(EDGE_SQUARES, PatternEvaluator::edge);
+    private static final int[] CORNER_TABLE = table(CORNER_SQUARES, PatternEvaluator::corner);
+    private static final int[] DIAGONAL = table(EDGE_SQUARES, PatternEvaluator::diagonal);
+    /**
+     * Squares of each pattern: four edges, four corners and two diagonals, each listed from a corner.
+     */
+    private static final int[][] PATTERNS = new int[10][];
+    /**
+     * The patterns square <code>sq</code> belongs to are <code>MEMBER[START[sq]]</code> up to
+     * <code>MEMBER[START[sq + 1]]</code>, with the weight of its digit in each.
+     */
+    private static final int[] START = new int[Bitboard.SQUARES + 1];
+    private static final int[] MEMBER;
+    private static final int[] WEIGHT;
+
+    static {
+        final int last = Reversi.ROWS - 1;
+        for (int i = 0; i < 4; i++) {
+            PATTERNS[i] = new int[EDGE_SQUARES];
+            PATTERNS[8 + i / 2] = new int[EDGE_SQUARES];
+        }
+        for (int i = 0; i < EDGE_SQUARES; i++) {
+            PATTERNS[0][i] = Bitboard.square(0, i);
+            PATTERNS[1][i] = Bitboard.square(last, i);
+            PATTERNS[2][i] = Bitboard.square(i, 0);
+            PATTERNS[3][i] = Bitboard.square(i, last);
+            PATTERNS[8][i] = Bitboard.square(i, i);
+            PATTERNS[9][i] = Bitboard.square(last - i, i);
+        }
+        for (int c = 0; c < 4; c++) {
+            final int row = (c & 1) == 0 ? 0 : last;
+            final int col = (c & 2) == 0 ? 0 : last;
+            PATTERNS[4 + c] = new int[CORNER_SQUARES];
+            for (int i = 0; i < CORNER_SQUARES; i++) {
+                PATTERNS[4 + c][i] = Bitboard.square(row + (row == 0 ? 1 : -1) * CORNER_OFFSETS[i][0],
+                        col + (col == 0 ? 1 : -1) * CORNER_OFFSETS[i][1]);
+            }
+        }
+
+        int members = 0;
+        for (final int[] pattern : PATTERNS) {
+            members += pattern.length;
+        }
+        MEMBER = new int[members];
+        WEIGHT = new int[members];
+        int m = 0;
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            START[sq] = m;
+            for (int p = 0; p < PATTERNS.length; p++) {
+                for (int i = 0, weight = 1; i < PATTERNS[p].length; i++, weight *= 3) {
+                    if (PATTERNS[p][i] == sq) {
+                        MEMBER[m] = p;
+                        WEIGHT[m++] = weight;
+                    }
+                }
+            }
+        }
+        START[Bitboard.SQUARES] = m;
+    }
+
+    /**
+     * State of each pattern in <code>PATTERNS</code>.
+     */
+    private final int[] index = new int[PATTERNS.length];
+
+    @Override
+    public void setPosition(long dark, long light)
+    {
+        for (int p = 0; p < index.length; p++) {
+            index[p] = 0;
+        }
+        for (long b = dark; b != 0; b &= b - 1) {
+            add(Long.numberOfTrailingZeros(b), Reversi.DARK);
+        }
+        for (long b = light; b != 0; b &= b - 1) {
+            add(Long.numberOfTrailingZeros(b), Reversi.LIGHT);
+        }
+    }
+
+    @Override
+    public void play(byte color, int sq, long flips)
+    {
+        // digits are the colors themselves, so a flip to dark takes one off and a flip to light adds one
+        add(sq, color);
+        final int flip = color == Reversi.DARK ? -1 : 1;
+        for (long f = flips; f != 0; f &= f - 1) {
+            add(Long.numberOfTrailingZeros(f), flip);
+        }
+    }
+
+    @Override
+    public void undo(byte color, int sq, long flips)
+    {
+        add(sq, -color);
+        final int flip = color == Reversi.DARK ? 1 : -1;
+        for (long f = flips; f != 0; f &= f - 1) {
+            add(Long.numberOfTrailingZeros(f), flip);
+        }
+    }
+
+    @Override
+    public int evaluate(byte color, long own, long opp)
+    {
+        int value = EDGE[index[0]] + EDGE[index[1]] + EDGE[index[2]] + EDGE[index[3]]
+                + CORNER_TABLE[index[4]] + CORNER_TABLE[index[5]] + CORNER_TABLE[index[6]] + CORNER_TABLE[index[7]]
+                + DIAGONAL[index[8]] + DIAGONAL[index[9]];
+        if (color != Reversi.DARK) value = -value;
+        value += MOBILITY * (Bitboard.count(Bitboard.moves(own, opp)) - Bitboard.count(Bitboard.moves(opp, own)));
+        return value / SCALE;
+    }
+
+    @Override
+    public long getKey()
+    {
+        return KEY;
+    }
+
+    /**
+     * @return a copy of the state of each pattern, to check the states kept up to date move by move against
+     * those {@link #setPosition} works out
+     */
+    int[] getStates()
+    {
+        return index.clone();
+    }
+
+    private void add(int sq, int delta)
+    {
+        for (int m = START[sq]; m < START[sq + 1]; m++) {
+            index[MEMBER[m]] += WEIGHT[m] * delta;
+        }
+    }
+
+    /**
+     * @param value value of a pattern for dark less its value for light, given its digits
+     * @return value of every state of a pattern of <code>n</code> squares
+     */
+    private static int[] table(int n, ToIntFunction<int[]> value)
+    {
+        int size = 1;
+        for (int i = 0; i < n; i++) {
+            size *= 3;
+        }
+        final int[] table = new int[size];
+        final int[] digits = new int[n];
+        for (int code = 0; code < size; code++) {
+            for (int i = 0, c = code; i < n; i++, c /= 3) {
+                digits[i] = c % 3;
+            }
+            table[code] = value.applyAsInt(digits);
+        }
+        return table;
+    }
+
+    /**
+     * Edge pieces which can no longer be flipped: those in a line of one color running from a corner, or every
+     * piece once the edge is full.  Corners are left to the corner patterns.
+     */
+    private static int edge(int[] d)
+    {
+        final int n = d.length;
+        final boolean[] stable = new boolean[n];
+        boolean full = true;
+        for (final int digit : d) {
+            if (digit == 0) full = false;
+        }
+        for (int i = 1; i < n - 1; i++) {
+            stable[i] = full;
+        }
+        if (d[0] != 0) {
+            for (int i = 1; i < n - 1 && d[i] == d[0]; i++) {
+                stable[i] = true;
+            }
+        }
+        if (d[n - 1] != 0) {
+            for (int i = n - 2; i > 0 && d[i] == d[n - 1]; i--) {
+                stable[i] = true;
+            }
+        }
+        int value = 0;
+        for (int i = 1; i < n - 1; i++) {
+            if (stable[i]) value += d[i] == Reversi.DARK ? STABLE : -STABLE;
+        }
+        return value;
+    }
+
+    /**
+     * The corner itself, and the squares next to it: a liability while the corner is empty, and safe once the
+     * corner is taken by the same color.
+     */
+    private static int corner(int[] d)
+    {
+        return corner(d, Reversi.DARK) - corner(d, Reversi.LIGHT);
+    }
+
+    private static int corner(int[] d, int color)
+    {
+        int value = 0;
+        if (d[0] == color) {
+            value += CORNER;
+            for (int i = 1; i <= 3; i++) {
+                if (d[i] == color) value += GUARDED;
+            }
+        } else if (d[0] == 0) {
+            if (d[1] == color) value += C_SQUARE;
+            if (d[2] == color) value += C_SQUARE;
+            if (d[3] == color) value += X_SQUARE;
+        }
+        return value;
+    }
+
+    /**
+     * A line of pieces running from an empty corner along the diagonal up to a piece of the other color, which
+     * can take the corner by flipping them.
+     */
+    private static int diagonal(int[] d)
+    {
+        return exposed(d, 0, 1) + exposed(d, d.length - 1, -1);
+    }
+
+    private static int exposed(int[] d, int corner, int step)
+    {
+        final int color = d[corner + step];
+        if (d[corner] != 0 || color == 0) return 0;
+        int i = corner + 2 * step;
+        while (i >= 0 && i < d.length && d[i] == color) i += step;
+        if (i < 0 || i >= d.length || d[i] == 0) return 0;
+        return color == Reversi.DARK ? EXPOSED : -EXPOSED;
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.thomashuss.reversi;
+
+/**
+ * Counts the positions reachable in exactly <code>n</code> plies, to check and time move generation.  A pass
+ * counts as a ply when the side to move has no legal move but its opponent does; a finished game counts as a
+ * single position at whatever depth it ends.  From the start position the counts must match the published
+ * values in {@link #START_COUNTS}.
+ * <p>
+ * With <code>-tree</code>, moves are generated through the game tree instead, so that its handling of passes
+ * is checked too.  This keeps every node on the current line in memory and is much slower.
+ * <p>
+ * Usage: <code>Perft [-tree] depth [board color]</code>, where <code>board</code> lists the 64 squares from a1 to h8,
+ * row by row, as <code>X</code> for dark, <code>O</code> for light and <code>-</code> or <code>.</code> for
+ * empty, and <code>color</code> is <code>X</code> or <code>O</code>.  Without a board, the search starts from
+ * the initial position with dark to move.
+ */
+public final class Perft
+{
+    /**
+     * Known counts from the start position for depths 1 and up.
+     */
+    static final long[] START_COUNTS = {
+            4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L, 24571284L, 212258800L, 1939886636L,
+            18429641748L, 184042084512L
+    };
+
+    private Perft()
+    {
+    }
+
+    /**
+     * @param own   pieces belonging to the color to move
+     * @param opp   pieces belonging to the other color
+     * @param depth plies to play
+     * @return number of positions reached after exactly <code>depth</code> plies
+     */
+    static long perft(long own, long opp, int depth)
+    {
+        return perft(own, opp, depth, false);
+    }
+
+    /**
+     * @param passed whether the other color has just passed
+     */
+    private static long perft(long own, long opp, int depth, boolean passed)
+    {
+        final long legal = Bitboard.moves(own, opp);
+        if (legal == 0) {
+            // a pass and the end of the game both count as one position on the horizon
+            if (passed || depth == 1) return 1;
+            return perft(opp, own, depth - 1, true);
+        }
+        if (depth == 1) return Bitboard.count(legal);
+        long nodes = 0, flips;
+        int sq;
+        for (long l = legal; l != 0; l &= l - 1) {
+            sq = Long.numberOfTrailingZeros(l);
+            flips = Bitboard.flips(own, opp, sq);
+            nodes += perft(opp & ~flips, own | flips | (1L << sq), depth - 1, false);
+        }
+        return nodes;
+    }
+
+    /**
+     * Count as {@link #perft} does, generating moves with {@link TreeSearch#open} and discarding each subtree
+     * once it has been counted.
+     *
+     * @param m     node holding the position; its color is the color which is not about to move
+     * @param depth plies to play
+     */
+    static long perft(TreeSearch search, GameTree tree, int m, int depth)
+    {
+        if (depth == 0) return 1;
+        final int mark = tree.size();
+        if (!search.open(m)) return 1;
+        if (tree.shouldSkipNext(m)) {
+            // the pass is a ply of its own, after which the same color moves again
+            if (depth == 1) {
+                tree.truncate(mark);
+                return 1;
+            }
+            depth--;
+        }
+        final int first = tree.getFirst(m);
+        final int end = first + tree.getCount(m);
+        long nodes = 0;
+        for (int n = first; n < end; n++) {
+            nodes += depth == 1 ? 1 : perft(search, tree, n, depth - 1);
+        }
+        tree.truncate(mark);
+        return nodes;
+    }
+
+    public static void main(String[] args)
+    {
+        final boolean useTree = args.length > 0 && args[0].equals("-tree");
+        final int arg = useTree ? 1 : 0;
+        if (args.length - arg != 1 && args.length - arg != 3) {
+            System.err.println("Usage: Perft [-tree] depth [board color]");
+            System.exit(2);
+        }
+        final int depth = Integer.parseInt(args[arg]);
+        long dark, light;
+        byte color = Reversi.DARK;
+        boolean start = args.length - arg == 1;
+
+        if (start) {
+            dark = Bitboard.bit(3, 4) | Bitboard.bit(4, 3);
+            light = Bitboard.bit(3, 3) | Bitboard.bit(4, 4);
+        } else {
+            final String board = args[arg + 1];
+            if (board.length() != Bitboard.SQUARES) throw new IllegalArgumentException("board must have 64 squares");
+            dark = light = 0;
+            for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+                switch (Character.toUpperCase(board.charAt(sq))) {
+                    case 'X' -> dark |= 1L << sq;
+                    case 'O' -> light |= 1L << sq;
+                    case '-', '.' -> {
+                    }
+                    default -> throw new IllegalArgumentException("bad square " + board.charAt(sq));
+                }
+            }
+            color = switch (args[arg + 2].toUpperCase()) {
+                case "X" -> Reversi.DARK;
+                case "O" -> Reversi.LIGHT;
+                default -> throw new IllegalArgumentException("color must be X or O");
+            };
+        }
+
+        final long own = color == Reversi.DARK ? dark : light;
+        final long opp = color == Reversi.DARK ? light : dark;
+        final GameTree tree = new GameTree();
+        final TreeSearch search = new TreeSearch(tree, new TranspositionTable(0));
+        boolean ok = true;
+        System.out.printf("%5s %15s %10s %15s%n", "depth", "nodes", "ms", "nodes/s");
+        for (int d = 1; d <= depth; d++) {
+            final long begin = System.nanoTime();
+            final long nodes = useTree
+                    ? perft(search, tree, tree.reset(color == Reversi.DARK ? Reversi.LIGHT : Reversi.DARK, dark, light), d)
+                    : perft(own, opp, d);
+            final long elapsed = Math.max(System.nanoTime() - begin, 1);
+            String check = "";
+            if (start && d <= START_COUNTS.length) {
+                if (nodes == START_COUNTS[d - 1]) {
+                    check = "  ok";
+                } else {
+                    check = "  expected " + START_COUNTS[d - 1];
+                    ok = false;
+                }
+            }
+            System.out.printf("%5d %15d %10d %15d%s%n", d, nodes, elapsed / 1_000_000,
+                    (long) (nodes * 1e9 / elapsed), check);
+        }
+        if (!ok) System.exit(1);
+    }
+}
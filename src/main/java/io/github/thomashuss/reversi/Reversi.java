@@ -1,41 +1,63 @@
 package io.github.thomashuss.reversi;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 public class Reversi
 {
-    private static final List<Move> EMPTY_M = List.of();
-    private static final byte MAX_DEPTH = 4;
     public static final byte DARK = 1;
     public static final byte LIGHT = 2;
     public static final double DEFAULT_ALPHA = 0.4;
     public static final int COLS = 8;
     public static final int ROWS = 8;
 
-    private final CopyOnWriteBoard[] boards;
     private final Consumer<String> logger;
     private byte myColor;
     private boolean game;
-    private byte[][] board;
     private byte lastColor;
     private double humanAvg;
     private double alpha = DEFAULT_ALPHA;
-    private Map<Long, Move> currentMoves;
-    private List<Move> moveList;
-    private Move lastMove;
+    private final ReversiEngine engine = new ReversiEngine();
+    /**
+     * Scored moves for whichever side is about to play, valid while <code>published</code> is set.
+     */
+    private final SearchResult moves = new SearchResult();
+    private boolean published;
+    /**
+     * Whether <code>moves</code> are the human's to play.
+     */
+    private boolean humanToMove;
+    /**
+     * Whether a move has been played which {@link #think} has yet to search after.
+     */
+    private boolean moved;
+    /**
+     * The game as of its last change, for readers which must not wait on a search.
+     */
+    private volatile GameSnapshot snapshot;
+    /**
+     * Moves of the game so far, as for {@link GameRecord}.
+     */
+    private final byte[] record = new byte[GameRecord.MAX_MOVES];
+    private int recorded;
+    /**
+     * Incremented whenever new moves are published, so that {@link #ponder} can tell when the moves it
+     * started on are gone.
+     */
+    private int turn;
+    /**
+     * Token for the latest search or pondering to start, which {@link #reset} cancels.
+     */
+    private volatile CancelToken running;
+    /**
+     * Number of threads in {@link #reset} which have yet to get the lock.
+     */
+    private final AtomicInteger resetting = new AtomicInteger();
 
     public Reversi(Consumer<String> logger)
     {
         this.logger = logger;
-        boards = new CopyOnWriteBoard[MAX_DEPTH + 1];
-        for (int i = 0; i <= MAX_DEPTH; i++) {
-            boards[i] = new CopyOnWriteBoard();
-        }
         reset();
     }
 
@@ -57,19 +79,200 @@ public class Reversi
         return otherColor(myColor);
     }
 
-    public synchronized void reset()
+    /**
+     * Search each position from scratch with alpha-beta pruning instead of keeping a game tree between turns.
+     *
+     * @param plies number of plies to search, counting the move itself, or 0 to use the game tree
+     */
+    public void setSearchDepth(int plies)
+    {
+        setSearchDepth(plies, 0);
+    }
+
+    /**
+     * Search each position from scratch with alpha-beta pruning, trading accuracy on weak moves for speed.
+     * Moves much worse than the best are rarely chosen by rubberbanding, so their scores may be left as
+     * upper bounds.
+     *
+     * @param plies     number of plies to search, counting the move itself, or 0 to use the game tree
+     * @param tolerance moves scoring more than this many points below the best move get an upper bound
+     *                  instead of an exact score; 0 scores every move exactly
+     */
+    public synchronized void setSearchDepth(int plies, int tolerance)
+    {
+        if (game) throw new RuntimeException();
+        engine.setSearchDepth(plies, tolerance);
+    }
+
+    /**
+     * Search each position with Monte Carlo tree search, which plays it out at random for as long as the
+     * budget allows, instead of with the game tree.
+     *
+     * @see ReversiEngine#setMonteCarlo
+     */
+    public synchronized void setMonteCarlo(boolean monteCarlo)
+    {
+        if (game) throw new RuntimeException();
+        engine.setMonteCarlo(monteCarlo);
+    }
+
+    /**
+     * Limit how long the search engine may think about each move.  The search deepens two plies at a time
+     * until it reaches the depth given to {@link #setSearchDepth}, the budget runs out, or the next iteration
+     * would not finish in time, so a generous depth lets easy positions be searched more deeply.  Monte Carlo
+     * search stops when either budget runs out, counting playouts as nodes.
+     *
+     * @param millis wall-clock budget per move, or 0 for none
+     * @param nodes  node budget per move, or 0 for none
+     */
+    public synchronized void setSearchBudget(long millis, long nodes)
+    {
+        engine.setSearchBudget(millis, nodes);
+    }
+
+    /**
+     * Have the search engine weigh up corners, edges, diagonals and mobility as well as pieces.
+     *
+     * @see ReversiEngine#setPatternEvaluation
+     */
+    public synchronized void setPatternEvaluation(boolean patterns)
+    {
+        if (game) throw new RuntimeException();
+        engine.setPatternEvaluation(patterns);
+    }
+
+    /**
+     * Solve the rest of the game exactly once few enough squares are empty, rather than scoring moves with
+     * the game tree or the search engine.
+     *
+     * @param empties solve once this many squares or fewer are empty, or 0 never to solve
+     * @param exact   score moves by the final difference in pieces rather than just by win, draw or loss
+     */
+    public synchronized void setEndgameSolver(int empties, boolean exact)
+    {
+        engine.setEndgameSolver(empties, exact);
+    }
+
+    synchronized void setEngine(Engine engine)
+    {
+        if (game) throw new RuntimeException();
+        this.engine.setEngine(engine);
+    }
+
+    /**
+     * Set the memory budget for the transposition table shared by the game tree and the search engine.
+     * Changing the size discards everything the table has learned.
+     *
+     * @param bytes memory budget; the table is rounded down to a power-of-two number of entries
+     */
+    public synchronized void setTableMemory(long bytes)
+    {
+        if (game) throw new RuntimeException();
+        engine.setTableMemory(bytes);
+    }
+
+    /**
+     * Spread the work of updating the game tree over several threads.  The moves and scores are the same as
+     * with a single thread.
+     *
+     * @param threads number of threads, or 1 to update the tree on the thread calling {@link #think}
+     */
+    public synchronized void setThreads(int threads)
+    {
+        engine.setThreads(threads);
+    }
+
+    /**
+     * Limit how many nodes the game tree keeps between turns, dropping the branches least likely to be
+     * played first.
+     *
+     * @param nodes most nodes to keep, or 0 for no limit
+     * @see ReversiEngine#setTreeBudget
+     */
+    public synchronized void setTreeBudget(int nodes)
+    {
+        engine.setTreeBudget(nodes);
+    }
+
+    /**
+     * Recall the scores of opening positions from <code>book</code> instead of working them out each game.
+     *
+     * @param book opening book, or null for none
+     */
+    public synchronized void setOpeningBook(OpeningBook book)
+    {
+        engine.setOpeningBook(book);
+    }
+
+    /**
+     * Start each game from <code>start</code> instead of searching the initial position again, starting over
+     * now.
+     *
+     * @param start tree searched from the initial position, or null to search it each game
+     */
+    public void setStartTree(StartTree start)
+    {
+        synchronized (this) {
+            if (game) throw new RuntimeException();
+            engine.setStartTree(start);
+        }
+        reset();
+    }
+
+    /**
+     * @return totals for every search made for this game and the ones before it
+     */
+    public SearchMetrics getMetrics()
+    {
+        return engine.getMetrics();
+    }
+
+    public long getTableProbes()
+    {
+        return engine.getTableProbes();
+    }
+
+    public long getTableHits()
     {
-        board = new byte[ROWS][COLS];
-        final int midRow = ROWS / 2;
-        final int midCol = COLS / 2;
-        board[midRow - 1][midCol] = board[midRow][midCol - 1] = DARK;
-        board[midRow - 1][midCol - 1] = board[midRow][midCol] = LIGHT;
-        lastColor = 0;
-        humanAvg = 0.5;
-        currentMoves = null;
-        moveList = null;
-        lastMove = null;
-        game = false;
+        return engine.getTableHits();
+    }
+
+    /**
+     * Start over.  A search still running for the old game is cancelled rather than waited for, so this
+     * returns within a fraction of a millisecond however long the search had left, and the old game's tree is
+     * dropped at once.
+     */
+    public void reset()
+    {
+        resetting.incrementAndGet();
+        try {
+            final CancelToken token = running;
+            if (token != null) token.cancel();
+            synchronized (this) {
+                engine.reset();
+                snapshot = engine.snapshot();
+                lastColor = 0;
+                humanAvg = 0.5;
+                humanToMove = false;
+                published = false;
+                moved = false;
+                recorded = 0;
+                turn++;
+                game = false;
+            }
+        } finally {
+            resetting.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the game so far, scored by the pieces on the board now
+     */
+    public synchronized GameRecord getRecord()
+    {
+        final GameSnapshot snapshot = this.snapshot;
+        return new GameRecord(getHumanColor(), alpha, snapshot.getDarkCount(), snapshot.getLightCount(),
+                Arrays.copyOf(record, recorded));
     }
 
     public void setAlpha(double alpha)
@@ -77,28 +280,45 @@ public class Reversi
         this.alpha = alpha;
     }
 
+    /**
+     * @return running average of how good the human's moves have been, as rubberbanding sees it
+     */
+    public synchronized double getHumanAverage()
+    {
+        return humanAvg;
+    }
+
+    /**
+     * @return the game as of its last change; never waits, even while a search is running
+     */
+    public GameSnapshot getSnapshot()
+    {
+        return snapshot;
+    }
+
     public byte at(int row, int col)
     {
-        return board[row][col];
+        return snapshot.at(row, col);
     }
 
     public synchronized boolean play(int row, int col)
     {
-        if (lastMove != null) throw new RuntimeException();
-        if (currentMoves != null && lastColor != otherColor(myColor)) {
-            Move m = currentMoves.get(encode(row, col));
-            if (m != null) {
-                board = m.getBoard();
+        if (moved) throw new RuntimeException();
+        if (humanToMove && lastColor != otherColor(myColor)) {
+            final int i = moves.indexOf(Bitboard.square(row, col));
+            if (i >= 0 && engine.play(row, col)) {
+                snapshot = engine.snapshot();
+                record[recorded++] = (byte) Bitboard.square(row, col);
                 lastColor = otherColor(myColor);
-                double thisScore = computeScore(m.getScore(),
-                        moveList.get(0).getScore(), moveList.get(moveList.size() - 1).getScore());
+                double thisScore = computeScore(moves.getScore(i),
+                        moves.getScore(0), moves.getScore(moves.getMoveCount() - 1));
                 double oldHumanAvg = humanAvg;
                 updateHumanAvg(thisScore);
                 logger.accept("H: " + encodeNotation(row, col)
                         + "   Your average is " + oldHumanAvg + ".  Your move scored " + thisScore
                         + ".  Your new average is " + humanAvg + ".");
-                lastMove = m;
-                currentMoves = null;
+                moved = true;
+                humanToMove = false;
                 return true;
             }
         }
@@ -107,312 +327,167 @@ public class Reversi
 
     public synchronized long computerPlay()
     {
-        if (lastMove != null) throw new RuntimeException();
-        if (lastColor != myColor && !moveList.isEmpty()) {
+        if (moved) throw new RuntimeException();
+        if (lastColor != myColor && published && moves.getMoveCount() != 0) {
             lastColor = myColor;
-            int idx = Collections.binarySearch(moveList, (int)
-                    (humanAvg >= 0 ? Math.ceil(humanAvg * Math.abs(moveList.get(0).getScore()))
-                    : Math.floor(humanAvg * Math.abs(moveList.get(moveList.size() - 1).getScore()))));
-            if (idx < 0) idx = Math.min(-idx - 1, moveList.size() - 1);
-            Move m = moveList.get(idx);
-            board = m.getBoard();
-            long root = m.getRoot();
+            final int size = moves.getMoveCount();
+            final int best = moves.getScore(0);
+            final int worst = moves.getScore(size - 1);
+            int idx = moves.searchScore(expectedScore(best, worst));
+            if (idx < 0) idx = Math.min(-idx - 1, size - 1);
+            final long root = moves.getMove(idx);
+            engine.play(getRow(root), getCol(root));
+            snapshot = engine.snapshot();
+            record[recorded++] = (byte) Bitboard.square(getRow(root), getCol(root));
             logger.accept("C: " + encodeNotation(getRow(root), getCol(root))
                     + "   Human average is " + humanAvg + ".  Choosing move of score "
-                    + computeScore(m.getScore(), moveList.get(0).getScore(), moveList.get(moveList.size() - 1).getScore())
-                    + " from " + moveList.size() + " possibilities.");
-            lastMove = m;
+                    + computeScore(moves.getScore(idx), best, worst)
+                    + " from " + size + " possibilities.");
+            moved = true;
             return root;
         }
         return -1;
     }
 
     /**
-     * Invoke on a separate thread after each play.
+     * Invoke on a separate thread after each play.  Returns without publishing anything if {@link #reset}
+     * cancels the search.
      */
     public synchronized void think()
     throws Endgame, SkipNextMove
     {
         try {
-            if (lastMove != null) thinkAbout(lastMove);
+            if (moved) {
+                published = false;
+                if (!engine.search(moves, begin())) return;
+                if (moves.isGameOver()) {
+                    game = false;
+                    throw new Endgame(moves.getDarkCount(), moves.getLightCount());
+                }
+                if (moves.isPass()) {
+                    lastColor = otherColor(lastColor);
+                    record[recorded++] = GameRecord.PASS;
+                }
+                publish(otherColor(lastColor));
+                if (moves.isPass()) {
+                    throw new SkipNextMove();
+                }
+            }
         } finally {
-            lastMove = null;
+            moved = false;
         }
     }
 
     /**
-     * Invoke on a separate thread before starting the game.
+     * Invoke on a separate thread before starting the game.  Returns without starting it if {@link #reset}
+     * cancels the search.
      */
-    public void init()
+    public synchronized void init()
     {
         if (myColor == 0) throw new RuntimeException();
-        List<Move> thoughts = think(DARK, board, (byte) 0);
-        thoughts.sort(Move::sortComparator);
-        if (myColor == DARK) {
-            synchronized (this) {
-                moveList = thoughts;
-                game = true;
-            }
-        } else {
-            Map<Long, Move> currentMoves = new HashMap<>(thoughts.size());
-            for (Move m : thoughts) {
-                currentMoves.put(m.getRoot(), m);
-            }
-            synchronized (this) {
-                moveList = thoughts;
-                this.currentMoves = currentMoves;
-                game = true;
-            }
-        }
-    }
-
-    private void updateHumanAvg(double d)
-    {
-        humanAvg += alpha * (d - humanAvg);
+        if (!engine.search(moves, begin())) return;
+        publish(DARK);
+        game = true;
     }
 
     /**
-     * The move <code>m</code> was just made; proceed to the next layer and update the move cache.
-     *
-     * @param m most recent move
+     * Invoke on a separate thread once it is the human's turn.  Until the human plays, work ahead on what
+     * {@link #think} will have to do after each of the human's moves, starting with the moves the human is
+     * most likely to choose.  Whatever was done for the move actually played is kept, and the rest is
+     * discarded along with the other moves.  Returns once the human plays, the game is reset, or there is
+     * nothing left to do.  Only the game tree is pondered; the search engine starts afresh each turn anyway.
      */
-    private void thinkAbout(Move m)
-    throws SkipNextMove, Endgame
+    public void ponder()
     {
-        Map<Long, Move> nextMoves;
-        List<Move> nextMoveList = m.getNext();
-
-        if (nextMoveList.isEmpty()) {
-            game = false;
-            endgame(m.getBoard());
-        } else {
-            if (m.shouldSkipNext()) {
-                lastColor = otherColor(lastColor);
-            }
-            if (otherColor(lastColor) == myColor) {
-                for (Move n : nextMoveList) {
-                    reconsider(n);
-                }
-                nextMoveList.sort(Move::sortComparator);
-                synchronized (this) {
-                    moveList = nextMoveList;
-                }
-            } else {
-                nextMoves = new HashMap<>(nextMoveList.size());
-                for (Move n : nextMoveList) {
-                    nextMoves.put(n.getRoot(), n);
-                    reconsider(n);
-                }
-                nextMoveList.sort(Move::sortComparator);
+        final int[] order = new int[Bitboard.SQUARES];
+        final int turn;
+        final int n;
+        final CancelToken token;
+        synchronized (this) {
+            if (!humanToMove) return;
+            turn = this.turn;
+            n = rank(order);
+            token = begin();
+        }
+        for (int i = 0; i < n; i++) {
+            while (true) {
                 synchronized (this) {
-                    currentMoves = nextMoves;
-                    moveList = nextMoveList;
+                    if (this.turn != turn || !humanToMove || token.isCancelled()) return;
+                    if (!engine.ponder(order[i], token)) break;
                 }
             }
         }
-        if (m.shouldSkipNext()) {
-            throw new SkipNextMove();
-        }
     }
 
-    private static void endgame(byte[][] board)
-    throws Endgame
+    /**
+     * @return a token for a search about to start under the lock, already cancelled if a thread in
+     * {@link #reset} is waiting for the lock
+     */
+    private CancelToken begin()
     {
-        int dark = 0, light = 0;
-        for (int i = 0; i < ROWS; i++) {
-            for (int j = 0; j < COLS; j++) {
-                switch (board[i][j]) {
-                    case DARK -> dark++;
-                    case LIGHT -> light++;
-                }
-            }
-        }
-        throw new Endgame(dark, light);
-    }
-
-    private void reconsider(Move m)
-    {
-        List<Move> next = m.getNext();
-        if (next == null) {
-            next = think(otherColor(m.getWhoseTurn()), m.getBoard(), MAX_DEPTH);
-            if (!next.isEmpty()) {
-                next.sort(Move::sortComparator);
-                m.setScore(m.getScore() - next.get(0).getScore());
-                m.setNext(next);
-            } else if (!m.shouldSkipNext()) {
-                next = think(m.getWhoseTurn(), m.getBoard(), MAX_DEPTH);
-                if (next.isEmpty()) {
-                    next = EMPTY_M;
-                } else {
-                    next.sort(Move::sortComparator);
-                    m.setSkipNext();
-                    m.setScore(m.getScore() + next.get(0).getScore());
-                }
-                m.setNext(next);
-            }
-        } else if (!next.isEmpty()) {
-            int oldScore = m.shouldSkipNext() ? m.getScore() - next.get(0).getScore()
-                    : m.getScore() + next.get(0).getScore();
-            for (Move n : next) {
-                reconsider(n);
-            }
-            next.sort(Move::sortComparator);
-            m.setScore(m.shouldSkipNext() ? oldScore + next.get(0).getScore() : oldScore - next.get(0).getScore());
-        }
+        final CancelToken token = new CancelToken();
+        running = token;
+        if (resetting.get() != 0) token.cancel();
+        return token;
     }
 
     /**
-     * Recursively generate all possible outcomes for the given color and board.  Does not allow depth
-     * to exceed <code>MAX_DEPTH</code>; e.g., for <code>MAX_DEPTH = 2</code>, 3 layers will be generated.
+     * Order the human's moves by how close their scores are to the score the human is expected to play,
+     * breaking ties by rank.
      *
-     * @param color color for which moves are to be generated
-     * @param board current state of the board
-     * @param depth recursion depth
-     * @return all possible moves for the given color and board
-     */
-    private List<Move> think(byte color, byte[][] board, byte depth)
-    {
-        byte[][] testBoard;
-        CopyOnWriteBoard cowBoard = boards[depth];
-        int score;
-        List<Move> childMoves;
-        List<Move> moves = new ArrayList<>();
-
-        for (int i = 0; i < ROWS; i++) {
-            for (int j = 0; j < COLS; j++) {
-                cowBoard.setBoard(board);
-                getBoardAfterMove(cowBoard, color, i, j);
-
-                if ((score = cowBoard.getPieceCount()) != 0) {
-                    testBoard = cowBoard.getBoard();
-                    childMoves = null;
-                    if (depth != MAX_DEPTH) {
-                        childMoves = think(otherColor(color), testBoard, (byte) (depth + 1));
-                        if (childMoves.isEmpty()) childMoves = EMPTY_M;
-                        else {
-                            childMoves.sort(Move::sortComparator);
-                            score -= childMoves.get(0).getScore();
-                        }
-                    }
-                    moves.add(new Move(encode(i, j), score, childMoves, color, testBoard));
-                }
+     * @param order receives the squares of the moves, most likely first
+     * @return number of moves
+     */
+    private int rank(int[] order)
+    {
+        final int n = moves.getMoveCount();
+        final int expected = expectedScore(moves.getScore(0), moves.getScore(n - 1));
+        int d, j;
+        for (int i = 0; i < n; i++) {
+            d = Math.abs(moves.getScore(i) - expected);
+            for (j = i; j > 0 && Math.abs(moves.getScore(order[j - 1]) - expected) > d; j--) {
+                order[j] = order[j - 1];
             }
+            order[j] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            order[i] = moves.getSquare(order[i]);
         }
-        cowBoard.forgetBoard();
-        return moves;
+        return n;
     }
 
-    private static boolean check(byte[][] board, byte color, int row, int col)
+    /**
+     * @return score of the move a player whose moves average <code>humanAvg</code> would play, given the best
+     * and worst scores available
+     */
+    private int expectedScore(int best, int worst)
     {
-        return row >= 0 && col >= 0 && row < ROWS && col < COLS && board[row][col] == color;
+        return (int) (humanAvg >= 0 ? Math.ceil(humanAvg * Math.abs(best)) : Math.floor(humanAvg * Math.abs(worst)));
     }
 
-    private static boolean couldBeLegal(byte[][] board, byte color, int row, int col)
+    private void updateHumanAvg(double d)
     {
-        return check(board, (byte) 0, row, col) && (check(board, color, row - 1, col) || check(board, color, row + 1, col)
-                || check(board, color, row, col - 1) || check(board, color, row, col + 1)
-                || check(board, color, row - 1, col - 1) || check(board, color, row + 1, col + 1)
-                || check(board, color, row - 1, col + 1) || check(board, color, row + 1, col - 1));
+        humanAvg += alpha * (d - humanAvg);
     }
 
-    private static void getBoardAfterMove(CopyOnWriteBoard board, byte color, int row, int col)
+    /**
+     * Make the moves just searched available to whichever side is about to play.
+     *
+     * @param color color about to play
+     */
+    private synchronized void publish(byte color)
     {
-        final byte other = otherColor(color);
-        if (!couldBeLegal(board.getBoard(), other, row, col)) return;
-        int i, j;
-
-        // check down
-        i = row + 1;
-        while (i < ROWS && board.at(i, col) == other) {
-            i++;
-        }
-        if (i < ROWS && board.at(i, col) == color) {
-            for (int k = row + 1; k < i; k++)
-                board.mark(k, col, color);
-        }
-
-        // check up
-        i = row - 1;
-        while (i >= 0 && board.at(i, col) == other) {
-            i--;
-        }
-        if (i >= 0 && board.at(i, col) == color) {
-            for (int k = row - 1; k > i; k--)
-                board.mark(k, col, color);
-        }
-
-        // check left
-        i = col - 1;
-        while (i >= 0 && board.at(row, i) == other) {
-            i--;
-        }
-        if (i >= 0 && board.at(row, i) == color) {
-            for (int k = col - 1; k > i; k--)
-                board.mark(row, k, color);
-        }
-
-        // check right
-        i = col + 1;
-        while (i < COLS && board.at(row, i) == other) {
-            i++;
-        }
-        if (i < COLS && board.at(row, i) == color) {
-            for (int k = col + 1; k < i; k++)
-                board.mark(row, k, color);
-        }
-
-        // check up-left
-        i = row - 1;
-        j = col - 1;
-        while (i >= 0 && j >= 0 && board.at(i, j) == other) {
-            i--;
-            j--;
-        }
-        if (i >= 0 && j >= 0 && board.at(i, j) == color) {
-            for (int k = row - 1, l = col - 1; k > i && l > j; k--, l--)
-                board.mark(k, l, color);
-        }
-
-        // check up-right
-        i = row - 1;
-        j = col + 1;
-        while (i >= 0 && j < COLS && board.at(i, j) == other) {
-            i--;
-            j++;
-        }
-        if (i >= 0 && j < COLS && board.at(i, j) == color) {
-            for (int k = row - 1, l = col + 1; k > i && l < j; k--, l++)
-                board.mark(k, l, color);
-        }
-
-        // check down-right
-        i = row + 1;
-        j = col + 1;
-        while (i < ROWS && j < COLS && board.at(i, j) == other) {
-            i++;
-            j++;
-        }
-        if (i < ROWS && j < COLS && board.at(i, j) == color) {
-            for (int k = row + 1, l = col + 1; k < i && l < j; k++, l++)
-                board.mark(k, l, color);
-        }
-
-        // check down-left
-        i = row + 1;
-        j = col - 1;
-        while (i < ROWS && j >= 0 && board.at(i, j) == other) {
-            i++;
-            j--;
-        }
-        if (i < ROWS && j >= 0 && board.at(i, j) == color) {
-            for (int k = row + 1, l = col - 1; k < i && l > j; k++, l--)
-                board.mark(k, l, color);
-        }
-
-        if (board.getPieceCount() != 0) board.mark(row, col, color);
+        snapshot = engine.snapshot();
+        published = true;
+        if (color != myColor) humanToMove = true;
+        turn++;
     }
 
-    private static double computeScore(int moveScore, int maxScore, int minScore)
+    /**
+     * @return how good a move scoring <code>moveScore</code> is, from -1 for the worst move to 1 for the best,
+     * with 0 for a move which neither gains nor loses
+     */
+    static double computeScore(int moveScore, int maxScore, int minScore)
     {
         if (maxScore == 0) {
             if (moveScore < 0) return -1.0;
@@ -424,17 +499,17 @@ public class Reversi
         return (double) -moveScore / minScore;
     }
 
-    private static byte otherColor(byte color)
+    static byte otherColor(byte color)
     {
         return color == DARK ? LIGHT : color == LIGHT ? DARK : 0;
     }
 
-    private static long encode(int row, int col)
+    static long encode(int row, int col)
     {
         return (((long) row) << 32) | (col & 0xffffffffL);
     }
 
-    private static String encodeNotation(int row, int col)
+    static String encodeNotation(int row, int col)
     {
         return String.valueOf((char) (col + 'a')) + (row + 1);
     }
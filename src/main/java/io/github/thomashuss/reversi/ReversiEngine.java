@@ -0,0 +1,603 @@
+package io.github.thomashuss.reversi;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The engine behind {@link Reversi} without the game around it: set up a position, play moves on it and
+ * search it.  Nothing here depends on AWT, and passes and the end of the game are reported in the
+ * {@link SearchResult} rather than thrown, so searching over and over allocates nothing once the game tree
+ * has grown to size.
+ * <p>
+ * Moves are searched with the game tree kept between moves unless {@link #setSearchDepth} picks alpha-beta
+ * search or {@link #setMonteCarlo} picks Monte Carlo tree search instead; the tree always looks the same number
+ * of moves ahead, while alpha-beta search is limited by depth and by {@link #setSearchBudget}, and Monte Carlo
+ * search by the budget alone.  Either way, positions close enough to the end are solved exactly.
+ * <p>
+ * An engine is not safe for use by several threads at once.
+ */
+public final class ReversiEngine
+{
+    /**
+     * Dark pieces in the initial position.
+     */
+    static final long INITIAL_DARK = Bitboard.bit(Reversi.ROWS / 2 - 1, Reversi.COLS / 2)
+            | Bitboard.bit(Reversi.ROWS / 2, Reversi.COLS / 2 - 1);
+    /**
+     * Light pieces in the initial position.
+     */
+    static final long INITIAL_LIGHT = Bitboard.bit(Reversi.ROWS / 2 - 1, Reversi.COLS / 2 - 1)
+            | Bitboard.bit(Reversi.ROWS / 2, Reversi.COLS / 2);
+
+    private final GameTree tree = new GameTree();
+    private final TreeSearch search;
+    private TranspositionTable table;
+    /**
+     * Whether <code>table</code> is shared with other engines, which then decide when it starts a new
+     * generation.
+     */
+    private boolean shared;
+    private EndgameSolver solver;
+    private Engine engine;
+    private long timeBudget;
+    private long nodeBudget;
+    private boolean patterns;
+    private ForkJoinPool pool;
+    private int treeBudget;
+    private StartTree start;
+    /**
+     * Node holding the current position.
+     */
+    private int root;
+    /**
+     * Whether <code>root</code> was read from <code>start</code>, whose subtrees below the moves from it have
+     * yet to be read.
+     */
+    private boolean atStart;
+    /**
+     * Square of the move leading to <code>root</code>, or -1 if the position was set up directly.
+     */
+    private int lastMove = -1;
+    /**
+     * Whether the children of <code>root</code> have been scored by {@link #search} since the position was set.
+     */
+    private boolean searched;
+    /**
+     * Number of moves at the front of the children of <code>root</code> which {@link #ponder} brought up to date
+     * before the move leading to <code>root</code> was played.
+     */
+    private int done;
+    /**
+     * For each move from the current position, how many of the replies to it have been brought up to date by
+     * {@link #ponder}.
+     */
+    private final int[] pondered = new int[Bitboard.SQUARES];
+    private final SearchMetrics metrics = new SearchMetrics();
+
+    public ReversiEngine()
+    {
+        this(new TranspositionTable(TranspositionTable.DEFAULT_MEMORY));
+        shared = false;
+    }
+
+    /**
+     * @param table transposition table shared with other engines
+     */
+    ReversiEngine(TranspositionTable table)
+    {
+        this.table = table;
+        shared = true;
+        search = new TreeSearch(tree, table);
+        solver = new EndgameSolver(EndgameSolver.DEFAULT_EMPTIES, true, table);
+        reset();
+    }
+
+    /**
+     * Search each position from scratch with alpha-beta pruning instead of keeping a game tree between moves.
+     *
+     * @param plies number of plies to search, counting the move itself, or 0 to use the game tree
+     */
+    public void setSearchDepth(int plies)
+    {
+        setSearchDepth(plies, 0);
+    }
+
+    /**
+     * Search each position from scratch with alpha-beta pruning, trading accuracy on weak moves for speed.
+     *
+     * @param plies     number of plies to search, counting the move itself, or 0 to use the game tree
+     * @param tolerance moves scoring more than this many points below the best move get an upper bound
+     *                  instead of an exact score; 0 scores every move exactly
+     */
+    public void setSearchDepth(int plies, int tolerance)
+    {
+        if (plies < 0 || tolerance < 0) throw new IllegalArgumentException();
+        AlphaBeta ab = null;
+        if (plies != 0) {
+            ab = new AlphaBeta(plies, table);
+            ab.setAspiration(AlphaBeta.DEFAULT_WINDOW, tolerance);
+            ab.setBudget(timeBudget, nodeBudget);
+            if (patterns) ab.setEvaluator(new PatternEvaluator());
+        }
+        setEngine(ab);
+    }
+
+    /**
+     * Search each position from scratch with Monte Carlo tree search instead of keeping a game tree between
+     * moves.  It plays the position out at random until the budget given to {@link #setSearchBudget} runs out,
+     * counting playouts as nodes, or for <code>MonteCarlo.DEFAULT_PLAYOUTS</code> playouts if there is none, on
+     * as many threads as {@link #setThreads} gives.  Scores are the average final margin in pieces.
+     *
+     * @param monteCarlo whether to search with Monte Carlo tree search; false goes back to the game tree if it
+     *                   was in use, and leaves alpha-beta search alone
+     * @see MonteCarlo
+     */
+    public void setMonteCarlo(boolean monteCarlo)
+    {
+        if (monteCarlo) {
+            final MonteCarlo mc = new MonteCarlo();
+            mc.setBudget(timeBudget, nodeBudget);
+            mc.setPool(pool);
+            setEngine(mc);
+        } else if (engine instanceof MonteCarlo) {
+            setEngine(null);
+        }
+    }
+
+    /**
+     * Limit how long alpha-beta search may think about each position.  The search deepens two plies at a time
+     * until it reaches the depth given to {@link #setSearchDepth}, the budget runs out, or the next iteration
+     * would not finish in time.  The game tree is not limited.
+     *
+     * @param millis wall-clock budget per search, or 0 for none
+     * @param nodes  node budget per search, or 0 for none
+     */
+    public void setSearchBudget(long millis, long nodes)
+    {
+        if (millis < 0 || nodes < 0) throw new IllegalArgumentException();
+        timeBudget = millis;
+        nodeBudget = nodes;
+        if (engine instanceof AlphaBeta ab) ab.setBudget(millis, nodes);
+        else if (engine instanceof MonteCarlo mc) mc.setBudget(millis, nodes);
+    }
+
+    /**
+     * Have alpha-beta search weigh up the positions at its horizon by corners, edges, diagonals and mobility,
+     * as well as counting the pieces gained on the way there.  This plays much better at the same depth, but
+     * scores are no longer just pieces.  The game tree always counts pieces only.
+     *
+     * @see PatternEvaluator
+     */
+    public void setPatternEvaluation(boolean patterns)
+    {
+        this.patterns = patterns;
+        if (engine instanceof AlphaBeta ab) ab.setEvaluator(patterns ? new PatternEvaluator() : null);
+    }
+
+    /**
+     * Solve the rest of the game exactly once few enough squares are empty.
+     *
+     * @param empties solve once this many squares or fewer are empty, or 0 never to solve
+     * @param exact   score moves by the final difference in pieces rather than just by win, draw or loss
+     */
+    public void setEndgameSolver(int empties, boolean exact)
+    {
+        if (empties < 0) throw new IllegalArgumentException();
+        solver = empties == 0 ? null : new EndgameSolver(empties, exact, table);
+    }
+
+    /**
+     * Search with <code>engine</code> instead of the game tree, or with the game tree if null.  Whatever was
+     * searched so far is discarded.
+     */
+    void setEngine(Engine engine)
+    {
+        this.engine = engine;
+        setPosition(tree.getDark(root), tree.getLight(root), Reversi.otherColor(tree.getWhoseTurn(root)));
+    }
+
+    /**
+     * Set the memory budget for the transposition table.  Changing the size discards everything the table has
+     * learned.
+     *
+     * @param bytes memory budget; the table is rounded down to a power-of-two number of entries
+     */
+    public void setTableMemory(long bytes)
+    {
+        table = new TranspositionTable(bytes);
+        shared = false;
+        search.setTable(table);
+        if (engine instanceof AlphaBeta ab) ab.setTable(table);
+        if (solver != null) solver.setTable(table);
+    }
+
+    /**
+     * Spread the work of updating the game tree over several threads.  The moves and scores are the same as
+     * with a single thread.  Monte Carlo search makes its playouts on them as well, and its scores then vary
+     * from run to run.
+     *
+     * @param threads number of threads, or 1 to update the tree on the thread calling {@link #search}
+     */
+    public void setThreads(int threads)
+    {
+        if (threads < 1) throw new IllegalArgumentException();
+        if (pool != null) pool.shutdown();
+        pool = threads == 1 ? null : new ForkJoinPool(threads);
+        if (engine instanceof MonteCarlo mc) mc.setPool(pool);
+    }
+
+    /**
+     * Limit how many nodes the game tree keeps between searches.  Once a search leaves more, the branches
+     * furthest from the best line are dropped, each leaving its root with the score it had.  Dropped branches
+     * near the current position are searched again when they are reached, while deeper ones keep their old
+     * scores until the game comes closer, so a tight budget costs some accuracy on unlikely lines.
+     *
+     * @param nodes most nodes to keep, or 0 for no limit
+     */
+    public void setTreeBudget(int nodes)
+    {
+        if (nodes < 0) throw new IllegalArgumentException();
+        treeBudget = nodes;
+    }
+
+    /**
+     * Recall the scores of opening positions from <code>book</code> instead of working them out.  Moves are
+     * scored the same either way.
+     *
+     * @param book opening book, which may be shared with other engines, or null for none
+     */
+    public void setOpeningBook(OpeningBook book)
+    {
+        search.setBook(book);
+    }
+
+    /**
+     * Start each game set up by {@link #reset} from <code>start</code> rather than searching the initial
+     * position again.  Moves are scored the same either way.  Only the game tree starts from it, and only from
+     * the next {@link #reset} on.
+     *
+     * @param start tree searched from the initial position, which may be shared with other engines, or null
+     */
+    public void setStartTree(StartTree start)
+    {
+        this.start = start;
+    }
+
+    public long getTableProbes()
+    {
+        return table.getProbes();
+    }
+
+    public long getTableHits()
+    {
+        return table.getHits();
+    }
+
+    /**
+     * @return totals for every search made so far, which may be read from any thread
+     */
+    public SearchMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * @return bytes held by the game tree
+     */
+    public long getTreeMemory()
+    {
+        return tree.getMemory();
+    }
+
+    /**
+     * Discard the game tree and give back its memory, keeping the current position.  The next
+     * {@link #search} starts over from that position.
+     */
+    public void releaseTree()
+    {
+        final long dark = getDark();
+        final long light = getLight();
+        final byte color = tree.getWhoseTurn(root);
+        tree.release();
+        moveTo(tree.reset(color, dark, light));
+    }
+
+    /**
+     * Set up the initial position, with dark to move.  With a start tree, the moves are already scored, and
+     * what lies below each of them is read in once it is played or pondered.
+     */
+    public void reset()
+    {
+        setPosition(INITIAL_DARK, INITIAL_LIGHT, Reversi.DARK);
+        if (start != null && engine == null) {
+            moveTo(start.reset(tree));
+            done = tree.getCount(root);
+            atStart = true;
+        }
+    }
+
+    /**
+     * Set up an arbitrary position.  If <code>color</code> has no move but the other color does, the other
+     * color plays instead.
+     *
+     * @param dark  dark pieces, with a1 as the lowest bit and h8 as the highest
+     * @param light light pieces
+     * @param color color to move
+     */
+    public void setPosition(long dark, long light, byte color)
+    {
+        if ((dark & light) != 0 || (color != Reversi.DARK && color != Reversi.LIGHT)) {
+            throw new IllegalArgumentException();
+        }
+        moveTo(tree.reset(Reversi.otherColor(color), dark, light));
+        lastMove = -1;
+    }
+
+    public long getDark()
+    {
+        return tree.getDark(root);
+    }
+
+    public long getLight()
+    {
+        return tree.getLight(root);
+    }
+
+    public byte at(int row, int col)
+    {
+        final long b = Bitboard.bit(row, col);
+        return (getDark() & b) != 0 ? Reversi.DARK : (getLight() & b) != 0 ? Reversi.LIGHT : 0;
+    }
+
+    /**
+     * @return color about to play, after any pass, or 0 if the game is over
+     */
+    public byte getColor()
+    {
+        final byte last = tree.getWhoseTurn(root);
+        final long dark = getDark();
+        final long light = getLight();
+        if (last == Reversi.DARK ? Bitboard.moves(light, dark) != 0 : Bitboard.moves(dark, light) != 0) {
+            return Reversi.otherColor(last);
+        }
+        if (last == Reversi.DARK ? Bitboard.moves(dark, light) != 0 : Bitboard.moves(light, dark) != 0) {
+            return last;
+        }
+        return 0;
+    }
+
+    /**
+     * Play a move for the color about to play, as given by {@link #getColor}.  Whatever the game tree has
+     * worked out about the position after the move is kept for the next {@link #search}.
+     *
+     * @return whether the move was legal; if not, nothing changes
+     */
+    public boolean play(int row, int col)
+    {
+        final int sq = Bitboard.square(row, col);
+        if (tree.isExpanded(root)) {
+            final int m = tree.find(root, sq);
+            if (m == GameTree.NONE) return false;
+            if (!tree.isExpanded(m)) load(m);
+            final int d = pondered[sq];
+            moveTo(m);
+            done = d;
+            lastMove = sq;
+            return true;
+        }
+        final byte color = getColor();
+        if (color == 0) return false;
+        final long own = color == Reversi.DARK ? getDark() : getLight();
+        final long opp = color == Reversi.DARK ? getLight() : getDark();
+        if ((Bitboard.moves(own, opp) & (1L << sq)) == 0) return false;
+        final long flips = Bitboard.flips(own, opp, sq);
+        final long newOwn = own | flips | (1L << sq);
+        final long newOpp = opp & ~flips;
+        moveTo(color == Reversi.DARK ? tree.reset(color, newOwn, newOpp) : tree.reset(color, newOpp, newOwn));
+        lastMove = sq;
+        return true;
+    }
+
+    /**
+     * @return the current position, with the scores from the last search if it was of this position
+     */
+    public GameSnapshot snapshot()
+    {
+        final int n = searched && tree.isExpanded(root) ? tree.getCount(root) : 0;
+        final int first = tree.getFirst(root);
+        final int[] squares = new int[n];
+        final int[] scores = new int[n];
+        for (int i = 0; i < n; i++) {
+            squares[i] = tree.getSquare(first + i);
+            scores[i] = tree.getScore(first + i);
+        }
+        return new GameSnapshot(getDark(), getLight(), getColor(), lastMove, squares, scores);
+    }
+
+    /**
+     * Search the current position.
+     *
+     * @return a new result
+     */
+    public SearchResult search()
+    {
+        final SearchResult result = new SearchResult();
+        search(result);
+        return result;
+    }
+
+    /**
+     * Search the current position, scoring every move available to the color about to play.
+     *
+     * @param result receives the moves, best first
+     */
+    public void search(SearchResult result)
+    {
+        search(result, CancelToken.NEVER);
+    }
+
+    /**
+     * Search the current position unless <code>token</code> is cancelled first.  A cancelled search gives up
+     * within a fraction of a millisecond and leaves <code>result</code> alone.  What the game tree worked out
+     * before then is kept, so searching the same position again carries on from there, while playing a move or
+     * setting a position drops the rest of the tree at once.
+     *
+     * @param result receives the moves, best first
+     * @param token  token which another thread may cancel, or which may run out, to stop the search
+     * @return whether the search finished
+     */
+    public boolean search(SearchResult result, CancelToken token)
+    {
+        final SearchEvent event = SearchEvents.startSearch();
+        final long start = System.nanoTime();
+        final long expanded = search.getExpanded();
+        final long reused = search.getReused();
+        final long recalled = search.getRecalled();
+        final long sortNanos = search.getSortNanos();
+        final long searchedBefore = getEngineNodes();
+        final boolean solving = solver != null && solver.canSolve(getDark(), getLight());
+        SearchPhaseEvent phase;
+
+        setToken(token);
+        if (!shared) table.nextGeneration();
+        try {
+            if (engine == null) {
+                phase = SearchEvents.startPhase("compact");
+                root = tree.compact(root);
+                SearchEvents.finishPhase(phase, tree.size());
+                if (search.update(root, done, solver, pool) && treeBudget != 0 && tree.size() > treeBudget) {
+                    phase = SearchEvents.startPhase("prune");
+                    root = tree.prune(root, treeBudget);
+                    SearchEvents.finishPhase(phase, tree.size());
+                }
+            } else {
+                final long dark = getDark();
+                final long light = getLight();
+                final Engine engine = solving ? solver : this.engine;
+                phase = SearchEvents.startPhase(solving ? "solve" : engine instanceof MonteCarlo ? "monte carlo"
+                        : "alpha-beta");
+                root = tree.reset(tree.getWhoseTurn(root), dark, light);
+                engine.searchAfter(tree, root);
+                SearchEvents.finishPhase(phase, tree.size());
+            }
+        } catch (SearchCancelled e) {
+            // alpha-beta search and the solver may have left some moves unscored
+            if (engine != null) root = tree.reset(tree.getWhoseTurn(root), getDark(), getLight());
+            searched = false;
+            metrics.cancelled();
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.mode = getMode(solving);
+                    event.cancelled = true;
+                    event.liveNodes = tree.size();
+                    event.commit();
+                }
+            }
+            return false;
+        } finally {
+            setToken(CancelToken.NEVER);
+        }
+        done = 0;
+        Arrays.fill(pondered, 0);
+        searched = true;
+        result.set(tree, root);
+
+        final long searchedNodes = getEngineNodes() - searchedBefore;
+        metrics.record(System.nanoTime() - start, search.getExpanded() - expanded, search.getReused() - reused,
+                search.getRecalled() - recalled, searchedNodes, search.getSortNanos() - sortNanos, tree.size());
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.mode = getMode(solving);
+                event.empties = Bitboard.SQUARES - result.getDarkCount() - result.getLightCount();
+                event.moves = result.getMoveCount();
+                event.bestScore = result.getMoveCount() == 0 ? 0 : result.getScore(0);
+                event.pass = result.isPass();
+                event.gameOver = result.isGameOver();
+                event.expanded = search.getExpanded() - expanded;
+                event.reused = search.getReused() - reused;
+                event.recalled = search.getRecalled() - recalled;
+                event.searched = searchedNodes;
+                event.liveNodes = tree.size();
+                event.commit();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return positions visited so far by alpha-beta search and the endgame solver, and Monte Carlo playouts
+     */
+    private long getEngineNodes()
+    {
+        return (engine instanceof AlphaBeta ab ? ab.getNodes() : engine instanceof MonteCarlo mc ? mc.getPlayouts() : 0)
+                + (solver == null ? 0 : solver.getNodes());
+    }
+
+    private String getMode(boolean solving)
+    {
+        return solving ? "solver" : engine == null ? "tree" : engine instanceof MonteCarlo ? "monte carlo"
+                : "alpha-beta";
+    }
+
+    /**
+     * Bring one more reply to the move to <code>sq</code> from the current position up to date, as
+     * {@link #search} would after that move.  The score of the move itself is left alone.  Only the game tree
+     * is pondered, only once the current position has been searched, and only while the tree is within its
+     * budget.
+     *
+     * @param token token to stop pondering with; a reply left half done is finished by the next search
+     * @return whether there was anything left to do for the move and it was done
+     */
+    boolean ponder(int sq, CancelToken token)
+    {
+        if (engine != null || !searched || (treeBudget != 0 && tree.size() >= treeBudget)) return false;
+        setToken(token);
+        try {
+            final int m = tree.find(root, sq);
+            if (m == GameTree.NONE || (!tree.isExpanded(m) && !load(m) && !search.open(m))) return false;
+            final int done = pondered[sq];
+            if (done == tree.getCount(m)) return false;
+            final int n = tree.getFirst(m) + done;
+            if (solver != null && solver.canSolve(tree.getDark(m), tree.getLight(m))) {
+                tree.setScore(n, solver.solveAfter(tree, n));
+            } else {
+                search.reconsider(n, 0);
+            }
+            pondered[sq] = done + 1;
+            return true;
+        } catch (SearchCancelled e) {
+            return false;
+        } finally {
+            setToken(CancelToken.NEVER);
+        }
+    }
+
+    /**
+     * Expand <code>m</code>, a move from the current position, from the start tree if that is where the
+     * position came from.
+     *
+     * @return whether <code>m</code> was expanded
+     */
+    private boolean load(int m)
+    {
+        return atStart && start.load(tree, m);
+    }
+
+    private void setToken(CancelToken token)
+    {
+        search.setToken(token);
+        if (solver != null) solver.setToken(token);
+        if (engine != null) engine.setToken(token);
+    }
+
+    private void moveTo(int node)
+    {
+        root = node;
+        atStart = false;
+        searched = false;
+        done = 0;
+        Arrays.fill(pondered, 0);
+    }
+}
@@ -21,8 +21,15 @@ import java.awt.Font;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.concurrent.ExecutionException;
 
+/**
+ * Usage: <code>ReversiUI [file]</code>, where each finished game is appended to <code>file</code> as a
+ * {@link GameRecord}, if given.  The {@link StartTree} is kept in <code>.reversi-start</code> in the user's home
+ * directory, and built there on the first run.
+ */
 public class ReversiUI
         extends JFrame
 {
@@ -36,6 +43,7 @@ public class ReversiUI
     private static final int INDICATOR_DELAY = 300;
     private static final Color DEFAULT_COLOR = Color.LIGHT_GRAY;
     private static final Color INDICATOR_COLOR = Color.YELLOW;
+    private static final Path START_TREE = Path.of(System.getProperty("user.home"), ".reversi-start");
 
     private final JButton[][] board;
     private final Timer computerPlayTimer;
@@ -45,13 +53,24 @@ public class ReversiUI
     private final JLabel alphaLabel;
     private final JSlider alphaSlider;
     private final Reversi reversi;
+    private final Path records;
     private JButton indicated;
     private boolean thinking;
+    /**
+     * Incremented on each reset, so that workers still running for the old game can tell they are done for.
+     */
+    private int game;
 
-    private ReversiUI()
+    /**
+     * @param records file to append finished games to, or null
+     * @param start   tree to start each game from, or null
+     */
+    private ReversiUI(Path records, StartTree start)
     {
         super("Reversi! Can you believe it?");
+        this.records = records;
         reversi = new Reversi(this::log);
+        reversi.setStartTree(start);
 
         JPanel logPanel = new JPanel();
         logPanel.setLayout(new BorderLayout());
@@ -109,11 +128,12 @@ public class ReversiUI
 
     private void reset()
     {
-        if (!thinking) {
-            reversi.reset();
-            fillBoard();
-            init();
-        }
+        game++;
+        thinking = false;
+        computerPlayTimer.stop();
+        reversi.reset();
+        fillBoard();
+        init();
     }
 
     private void log(String s)
@@ -132,11 +152,10 @@ public class ReversiUI
 
     private void fillBoard()
     {
-        synchronized (reversi) {
-            for (int i = 0; i < Reversi.ROWS; i++) {
-                for (int j = 0; j < Reversi.COLS; j++) {
-                    board[i][j].setText(PIECES[reversi.at(i, j)]);
-                }
+        final GameSnapshot snapshot = reversi.getSnapshot();
+        for (int i = 0; i < Reversi.ROWS; i++) {
+            for (int j = 0; j < Reversi.COLS; j++) {
+                board[i][j].setText(PIECES[snapshot.at(i, j)]);
             }
         }
     }
@@ -144,6 +163,7 @@ public class ReversiUI
     private void computerPlay()
     {
         long played = reversi.computerPlay();
+        if (played == -1) return;
         fillBoard();
         indicate(Reversi.getRow(played), Reversi.getCol(played));
         new ThinkWorker(false).execute();
@@ -169,11 +189,18 @@ public class ReversiUI
     private void endgame(int dark, int light)
     {
         log("The game is over.      Dark's score: " + dark + "      Light's score: " + light);
+        if (records != null) {
+            try (GameRecordWriter writer = new GameRecordWriter(records)) {
+                writer.write(reversi.getRecord());
+            } catch (IOException e) {
+                log("Could not save the game: " + e.getMessage());
+            }
+        }
     }
 
-    private static void createAndShowGUI()
+    private static void createAndShowGUI(Path records, StartTree start)
     {
-        ReversiUI ui = new ReversiUI();
+        ReversiUI ui = new ReversiUI(records, start);
         ui.setVisible(true);
         ui.setDefaultCloseOperation(EXIT_ON_CLOSE);
         ui.init();
@@ -181,12 +208,30 @@ public class ReversiUI
 
     public static void main(String[] args)
     {
-        SwingUtilities.invokeLater(ReversiUI::createAndShowGUI);
+        final Path records = args.length > 0 ? Path.of(args[0]) : null;
+        final StartTree start = openStartTree();
+        SwingUtilities.invokeLater(() -> createAndShowGUI(records, start));
+    }
+
+    /**
+     * @return the start tree, or null if it can be neither read nor built, in which case each game searches
+     * the initial position itself
+     */
+    private static StartTree openStartTree()
+    {
+        try {
+            return StartTree.open(START_TREE);
+        } catch (IOException e) {
+            System.err.println("Could not load the start tree: " + e.getMessage());
+            return null;
+        }
     }
 
     private class InitWorker
             extends SwingWorker<Void, Void>
     {
+        private final int started = game;
+
         private InitWorker()
         {
             thinking = true;
@@ -202,6 +247,7 @@ public class ReversiUI
         @Override
         protected void done()
         {
+            if (started != game) return;
             try {
                 get();
             } catch (ExecutionException | InterruptedException e) {
@@ -212,6 +258,7 @@ public class ReversiUI
             byte humanColor = reversi.getHumanColor();
             log("New game with human as " + COLORS[humanColor - 1] + ".");
             if (humanColor == Reversi.LIGHT) computerPlayTimer.start();
+            else new PonderWorker().execute();
         }
     }
 
@@ -219,6 +266,7 @@ public class ReversiUI
             extends SwingWorker<Void, Void>
     {
         private final boolean invokedByHuman;
+        private final int started = game;
 
         private ThinkWorker(boolean invokedByHuman)
         {
@@ -237,10 +285,12 @@ public class ReversiUI
         @Override
         protected void done()
         {
+            if (started != game) return;
             thinking = false;
             try {
                 get();
                 if (invokedByHuman) computerPlayTimer.start();
+                else new PonderWorker().execute();
             } catch (InterruptedException | ExecutionException e) {
                 Throwable cause = e.getCause();
                 if (cause instanceof Endgame eg) {
@@ -248,6 +298,7 @@ public class ReversiUI
                 } else if (cause instanceof SkipNextMove) {
                     if (invokedByHuman) {
                         log("I have no legal moves.  Go again.");
+                        new PonderWorker().execute();
                     } else {
                         log("You have no legal moves.  I will go again.");
                         computerPlayTimer.start();
@@ -257,6 +308,27 @@ public class ReversiUI
         }
     }
 
+    private class PonderWorker
+            extends SwingWorker<Void, Void>
+    {
+        @Override
+        protected Void doInBackground()
+        {
+            reversi.ponder();
+            return null;
+        }
+
+        @Override
+        protected void done()
+        {
+            try {
+                get();
+            } catch (ExecutionException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     private class PlayListener
             implements ActionListener
     {
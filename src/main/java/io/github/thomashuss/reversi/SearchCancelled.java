@@ -0,0 +1,17 @@
+package io.github.thomashuss.reversi;
+
+/**
+ * Unwinds a search whose {@link CancelToken} has been cancelled.  There is only ever the one instance, with
+ * no stack trace, so that cancelling costs nothing but the unwinding itself; it never escapes
+ * {@link ReversiEngine}.
+ */
+final class SearchCancelled
+        extends RuntimeException
+{
+    static final SearchCancelled INSTANCE = new SearchCancelled();
+
+    private SearchCancelled()
+    {
+        super(null, null, false, false);
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.thomashuss.reversi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event covering one {@link ReversiEngine#search}, from the first phase to the last.  Like
+ * {@link SearchPhaseEvent}, it is only made through {@link SearchEvents}, while a recording has it enabled.
+ */
+@Name("io.github.thomashuss.reversi.Search")
+@Label("Reversi Search")
+@Category("Reversi")
+@Description("Search of one position for the moves available")
+final class SearchEvent
+        extends Event
+{
+    static final EventType TYPE = EventType.getEventType(SearchEvent.class);
+
+    @Label("Mode")
+    @Description("tree, alpha-beta, monte carlo or solver")
+    String mode;
+    @Label("Empty Squares")
+    int empties;
+    @Label("Moves")
+    int moves;
+    @Label("Best Score")
+    int bestScore;
+    @Label("Pass")
+    boolean pass;
+    @Label("Game Over")
+    boolean gameOver;
+    @Label("Nodes Expanded")
+    long expanded;
+    @Label("Nodes Reused")
+    long reused;
+    @Label("Nodes Recalled")
+    long recalled;
+    @Label("Nodes Searched")
+    long searched;
+    @Label("Live Nodes")
+    int liveNodes;
+    @Label("Cancelled")
+    boolean cancelled;
+}
@@ -0,0 +1,51 @@
+package io.github.thomashuss.reversi;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Makes the JFR events for searches.  Merely loading an event class starts up much of JFR, which takes a good
+ * part of a second, so the event classes are not touched at all until JFR is running, and the first search of
+ * a game started without it costs no more than the rest.
+ */
+final class SearchEvents
+{
+    private SearchEvents()
+    {
+    }
+
+    /**
+     * @return a {@link SearchEvent} begun now, or null if no recording wants it
+     */
+    static SearchEvent startSearch()
+    {
+        if (!FlightRecorder.isInitialized() || !SearchEvent.TYPE.isEnabled()) return null;
+        final SearchEvent event = new SearchEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @return a {@link SearchPhaseEvent} begun now, or null if no recording wants it
+     */
+    static SearchPhaseEvent startPhase(String phase)
+    {
+        if (!FlightRecorder.isInitialized() || !SearchPhaseEvent.TYPE.isEnabled()) return null;
+        final SearchPhaseEvent event = new SearchPhaseEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End and commit an event from {@link #startPhase}, if there is one.
+     */
+    static void finishPhase(SearchPhaseEvent event, int liveNodes)
+    {
+        if (event == null) return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.liveNodes = liveNodes;
+            event.commit();
+        }
+    }
+}
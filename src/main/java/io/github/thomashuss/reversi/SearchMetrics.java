@@ -0,0 +1,183 @@
+package io.github.thomashuss.reversi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals for the searches made by one {@link ReversiEngine}.  The engine records each search as it
+ * finishes, and the totals may be read from any thread at any time.  Think latencies are kept in a histogram
+ * of power-of-two buckets of microseconds, so percentiles are accurate to within a factor of two.
+ */
+public final class SearchMetrics
+{
+    private static final int BUCKETS = 40;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder thinkNanos = new LongAdder();
+    private final LongAdder expanded = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder recalled = new LongAdder();
+    private final LongAdder searched = new LongAdder();
+    private final LongAdder sortNanos = new LongAdder();
+    private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+    private volatile long maxThinkNanos;
+    private volatile long lastThinkNanos;
+    private volatile int liveNodes;
+    private volatile int maxLiveNodes;
+
+    /**
+     * Record a finished search.  Only the engine's own thread calls this.
+     */
+    void record(long nanos, long expanded, long reused, long recalled, long searched, long sortNanos,
+                int liveNodes)
+    {
+        searches.increment();
+        thinkNanos.add(nanos);
+        this.expanded.add(expanded);
+        this.reused.add(reused);
+        this.recalled.add(recalled);
+        this.searched.add(searched);
+        this.sortNanos.add(sortNanos);
+        latency.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000)));
+        lastThinkNanos = nanos;
+        if (nanos > maxThinkNanos) maxThinkNanos = nanos;
+        this.liveNodes = liveNodes;
+        if (liveNodes > maxLiveNodes) maxLiveNodes = liveNodes;
+    }
+
+    /**
+     * Record a search which was cancelled before it finished.  Its time and nodes are not counted.
+     */
+    void cancelled()
+    {
+        cancelled.increment();
+    }
+
+    /**
+     * @return searches which finished
+     */
+    public long getSearches()
+    {
+        return searches.sum();
+    }
+
+    public long getCancelled()
+    {
+        return cancelled.sum();
+    }
+
+    /**
+     * @return nodes generated in the game tree
+     */
+    public long getNodesExpanded()
+    {
+        return expanded.sum();
+    }
+
+    /**
+     * @return nodes in the game tree which were kept from earlier searches and only had to be rescored
+     */
+    public long getNodesReused()
+    {
+        return reused.sum();
+    }
+
+    /**
+     * @return nodes in the game tree which were scored from the transposition table instead of expanded
+     */
+    public long getNodesRecalled()
+    {
+        return recalled.sum();
+    }
+
+    /**
+     * @return positions visited by alpha-beta search and the endgame solver
+     */
+    public long getNodesSearched()
+    {
+        return searched.sum();
+    }
+
+    /**
+     * @return time spent sorting the moves available in each position searched
+     */
+    public long getSortNanos()
+    {
+        return sortNanos.sum();
+    }
+
+    public long getThinkNanos()
+    {
+        return thinkNanos.sum();
+    }
+
+    public long getLastThinkNanos()
+    {
+        return lastThinkNanos;
+    }
+
+    public long getMaxThinkNanos()
+    {
+        return maxThinkNanos;
+    }
+
+    /**
+     * @param fraction between 0 and 1, such as 0.99 for the 99th percentile
+     * @return upper bound of the bucket holding the given percentile of think latency, or the longest think if
+     * that is less, in nanoseconds; 0 if nothing has been searched
+     */
+    public long getThinkPercentileNanos(double fraction)
+    {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += latency.get(i);
+        if (total == 0) return 0;
+        final long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += latency.get(i);
+            if (seen >= Math.max(rank, 1)) return Math.min((1L << i) * 1000, maxThinkNanos);
+        }
+        return maxThinkNanos;
+    }
+
+    /**
+     * @return nodes generated or visited per second of thinking
+     */
+    public long getNodesPerSecond()
+    {
+        final long nanos = thinkNanos.sum();
+        return nanos == 0 ? 0 : (long) ((expanded.sum() + searched.sum()) * 1e9 / nanos);
+    }
+
+    /**
+     * @return nodes in the game tree after the last search
+     */
+    public int getLiveNodes()
+    {
+        return liveNodes;
+    }
+
+    public int getMaxLiveNodes()
+    {
+        return maxLiveNodes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "searches " + getSearches()
+                + ", cancelled " + getCancelled()
+                + ", think ms mean " + (getSearches() == 0 ? 0 : getThinkNanos() / getSearches() / 1_000_000)
+                + " p50 " + getThinkPercentileNanos(0.5) / 1_000_000
+                + " p99 " + getThinkPercentileNanos(0.99) / 1_000_000
+                + " max " + getMaxThinkNanos() / 1_000_000
+                + ", expanded " + getNodesExpanded()
+                + ", reused " + getNodesReused()
+                + ", recalled " + getNodesRecalled()
+                + ", searched " + getNodesSearched()
+                + ", nodes/s " + getNodesPerSecond()
+                + ", sort ms " + getSortNanos() / 1_000_000
+                + ", live nodes " + getLiveNodes() + " (max " + getMaxLiveNodes() + ")";
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.thomashuss.reversi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event covering one phase of a search, such as compacting the game tree or reconsidering the moves.
+ * Events are only made through {@link SearchEvents}, while a recording has them enabled, so that searching
+ * otherwise allocates nothing.
+ */
+@Name("io.github.thomashuss.reversi.SearchPhase")
+@Label("Reversi Search Phase")
+@Category("Reversi")
+@Description("One phase of a search")
+final class SearchPhaseEvent
+        extends Event
+{
+    static final EventType TYPE = EventType.getEventType(SearchPhaseEvent.class);
+
+    @Label("Phase")
+    String phase;
+    @Label("Live Nodes")
+    @Description("Nodes in the game tree at the end of the phase")
+    int liveNodes;
+}
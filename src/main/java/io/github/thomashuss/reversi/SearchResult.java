@@ -0,0 +1,141 @@
+package io.github.thomashuss.reversi;
+
+import java.util.Objects;
+
+/**
+ * Outcome of {@link ReversiEngine#search}: the moves available to the color about to play with their scores,
+ * best first, whether that color only gets to play because the other had to pass, and whether the game is
+ * over.  A result can be handed back to the engine to be filled in again, so that searching allocates
+ * nothing.
+ * <p>
+ * Moves are encoded as by {@link Reversi#computerPlay}; use {@link Reversi#getRow} and {@link Reversi#getCol}
+ * to decode them.
+ */
+public final class SearchResult
+{
+    private final int[] squares = new int[Bitboard.SQUARES];
+    private final int[] scores = new int[Bitboard.SQUARES];
+    private int count;
+    private byte color;
+    private boolean pass;
+    private boolean gameOver;
+    private int darkCount;
+    private int lightCount;
+
+    /**
+     * @return color whose moves these are, or 0 if the game is over
+     */
+    public byte getColor()
+    {
+        return color;
+    }
+
+    /**
+     * @return whether the other color had no move, so that the same color as last time plays again
+     */
+    public boolean isPass()
+    {
+        return pass;
+    }
+
+    public boolean isGameOver()
+    {
+        return gameOver;
+    }
+
+    public int getDarkCount()
+    {
+        return darkCount;
+    }
+
+    public int getLightCount()
+    {
+        return lightCount;
+    }
+
+    public int getMoveCount()
+    {
+        return count;
+    }
+
+    /**
+     * @param i rank of the move, 0 for the best
+     */
+    public long getMove(int i)
+    {
+        final int sq = squares[Objects.checkIndex(i, count)];
+        return Reversi.encode(sq / Reversi.COLS, sq % Reversi.COLS);
+    }
+
+    /**
+     * @param i rank of the move, 0 for the best
+     * @return pieces the move gains, less what the best reply gains back, and so on to the search horizon
+     */
+    public int getScore(int i)
+    {
+        return scores[Objects.checkIndex(i, count)];
+    }
+
+    /**
+     * @return the best move, or -1 if there is none
+     */
+    public long getBestMove()
+    {
+        return count == 0 ? -1 : getMove(0);
+    }
+
+    int getSquare(int i)
+    {
+        return squares[Objects.checkIndex(i, count)];
+    }
+
+    /**
+     * @return rank of the move to <code>sq</code>, or -1 if it is not available
+     */
+    int indexOf(int sq)
+    {
+        for (int i = 0; i < count; i++) {
+            if (squares[i] == sq) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Binary search the moves, which are sorted best first, for a score.
+     *
+     * @return position of a move with the given score, or <code>(-(insertion point) - 1)</code> as in
+     * {@link java.util.Collections#binarySearch}
+     */
+    int searchScore(int score)
+    {
+        int low = 0, high = count - 1, mid, cmp;
+        while (low <= high) {
+            mid = (low + high) >>> 1;
+            cmp = score - scores[mid];
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Fill in the result from the sorted children of <code>node</code>.
+     */
+    void set(GameTree tree, int node)
+    {
+        final long dark = tree.getDark(node);
+        final long light = tree.getLight(node);
+        darkCount = Bitboard.count(dark);
+        lightCount = Bitboard.count(light);
+        count = tree.isExpanded(node) ? tree.getCount(node) : 0;
+        gameOver = count == 0;
+        pass = !gameOver && tree.shouldSkipNext(node);
+        final int first = tree.getFirst(node);
+        color = gameOver ? 0 : tree.getWhoseTurn(first);
+        for (int i = 0; i < count; i++) {
+            squares[i] = tree.getSquare(first + i);
+            scores[i] = tree.getScore(first + i);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.thomashuss.reversi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * One game hosted by a {@link SessionManager}.  Work for a session runs on the manager's pool one task at a
+ * time, in the order it was submitted, so the session's engine is never touched by two threads at once and no
+ * thread is ever parked waiting for it.
+ */
+public final class Session
+{
+    private final long id;
+    private final SessionManager manager;
+    private final ReversiEngine engine;
+    /**
+     * Completes once everything submitted so far has run; guarded by <code>this</code>.
+     */
+    private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+    /**
+     * Tree memory last reported to the manager; only touched by the session's own tasks.
+     */
+    private volatile long memory;
+    private volatile long lastUsed;
+    /**
+     * The game as of the last task to finish.
+     */
+    private volatile GameSnapshot snapshot;
+    /**
+     * Whether a task to give back the tree is already queued.
+     */
+    private final AtomicBoolean releasing = new AtomicBoolean();
+    private volatile boolean closed;
+    // written only by the session's own tasks
+    private volatile long searches;
+    private volatile long searchNanos;
+    private volatile long maxSearchNanos;
+    private volatile long lastSearchNanos;
+    private volatile long waitNanos;
+
+    Session(long id, SessionManager manager, ReversiEngine engine)
+    {
+        this.id = id;
+        this.manager = manager;
+        this.engine = engine;
+        lastUsed = System.nanoTime();
+        snapshot = engine.snapshot();
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    /**
+     * Run <code>task</code> with the session's engine to itself once everything submitted before it has run.
+     * The engine must not be used once the task returns.
+     *
+     * @return the task's result
+     */
+    public <T> CompletableFuture<T> submit(Function<ReversiEngine, T> task)
+    {
+        lastUsed = System.nanoTime();
+        return enqueue(task);
+    }
+
+    /**
+     * Play a move for the color about to play.
+     *
+     * @return whether the move was legal
+     */
+    public CompletableFuture<Boolean> play(int row, int col)
+    {
+        return submit(e -> e.play(row, col));
+    }
+
+    /**
+     * Search the current position, recording how long the search took and how long it waited to start.
+     */
+    public CompletableFuture<SearchResult> search()
+    {
+        final long submitted = System.nanoTime();
+        return submit(e -> {
+            final long start = System.nanoTime();
+            final SearchResult result = e.search();
+            final long elapsed = System.nanoTime() - start;
+            searches++;
+            searchNanos += elapsed;
+            waitNanos += start - submitted;
+            lastSearchNanos = elapsed;
+            if (elapsed > maxSearchNanos) maxSearchNanos = elapsed;
+            manager.searched();
+            return result;
+        });
+    }
+
+    public long getSearches()
+    {
+        return searches;
+    }
+
+    /**
+     * @return mean time spent searching, in nanoseconds
+     */
+    public long getMeanSearchNanos()
+    {
+        final long n = searches;
+        return n == 0 ? 0 : searchNanos / n;
+    }
+
+    public long getMaxSearchNanos()
+    {
+        return maxSearchNanos;
+    }
+
+    public long getLastSearchNanos()
+    {
+        return lastSearchNanos;
+    }
+
+    /**
+     * @return mean time a search waited behind other work before it started, in nanoseconds
+     */
+    public long getMeanWaitNanos()
+    {
+        final long n = searches;
+        return n == 0 ? 0 : waitNanos / n;
+    }
+
+    /**
+     * @return the game as of the last task to finish, without waiting for the tasks still queued
+     */
+    public GameSnapshot getSnapshot()
+    {
+        return snapshot;
+    }
+
+    /**
+     * @return totals for every search made in the session, which may be read at any time
+     */
+    public SearchMetrics getMetrics()
+    {
+        return engine.getMetrics();
+    }
+
+    /**
+     * @return bytes held by the session's game tree as of the last task to finish
+     */
+    public long getTreeMemory()
+    {
+        return memory;
+    }
+
+    long getLastUsed()
+    {
+        return lastUsed;
+    }
+
+    /**
+     * Give back the tree for good once everything submitted so far has run.
+     */
+    void close()
+    {
+        closed = true;
+        release();
+    }
+
+    /**
+     * Give back the tree once everything submitted so far has run, unless that is already queued.
+     *
+     * @return whether a task was queued
+     */
+    boolean release()
+    {
+        if (!releasing.compareAndSet(false, true)) return false;
+        enqueue(e -> {
+            releasing.set(false);
+            e.releaseTree();
+            return null;
+        });
+        return true;
+    }
+
+    /**
+     * Queue <code>task</code> behind everything submitted so far without counting as use of the session.
+     */
+    synchronized <T> CompletableFuture<T> enqueue(Function<ReversiEngine, T> task)
+    {
+        manager.queued(1);
+        final CompletableFuture<T> future = tail.thenApplyAsync(ignored -> {
+            manager.queued(-1);
+            try {
+                return task.apply(engine);
+            } finally {
+                snapshot = engine.snapshot();
+                account();
+            }
+        }, manager.getPool());
+        tail = future.handle((result, e) -> null);
+        return future;
+    }
+
+    /**
+     * Report the tree's memory to the manager, first giving it back if it is over the session's cap.
+     */
+    private void account()
+    {
+        long now = engine.getTreeMemory();
+        if (closed) {
+            now = 0;
+        } else if (now > manager.getSessionMemory()) {
+            engine.releaseTree();
+            now = engine.getTreeMemory();
+        }
+        final long delta = now - memory;
+        memory = now;
+        if (delta != 0) manager.allocated(this, delta);
+    }
+}
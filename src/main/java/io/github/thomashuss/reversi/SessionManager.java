@@ -0,0 +1,221 @@
+package io.github.thomashuss.reversi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts many games at once on one bounded pool of threads.  Each {@link Session} runs its work one task at a
+ * time, and the pool takes tasks first in, first out, so a busy session cannot starve the others and there are
+ * never more threads than the pool was given, however many sessions there are.
+ * <p>
+ * Every session keeps its own game tree, but they all share one transposition table, which starts a new
+ * generation once for about every search each session could have made.  A session whose tree grows past the
+ * per-session cap gives it back after the task that grew it, and once the trees together pass the global cap,
+ * the sessions used least recently give theirs back until they fit again.  A session which gave back its tree
+ * just starts over from its current position on its next search.
+ */
+public final class SessionManager
+        implements AutoCloseable
+{
+    public static final long DEFAULT_SESSION_MEMORY = 64L << 20;
+    public static final long DEFAULT_TOTAL_MEMORY = 1L << 30;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final long sessionMemory;
+    private final long totalMemory;
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong treeMemory = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicBoolean reclaiming = new AtomicBoolean();
+    private volatile OpeningBook book;
+
+    /**
+     * Use a thread for each processor and the default memory caps.
+     */
+    public SessionManager()
+    {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_SESSION_MEMORY, DEFAULT_TOTAL_MEMORY,
+                TranspositionTable.DEFAULT_MEMORY);
+    }
+
+    /**
+     * @param threads       number of threads to run every session's work on
+     * @param sessionMemory most memory one session's game tree may keep between tasks, in bytes
+     * @param totalMemory   most memory all the game trees together may keep, in bytes
+     * @param tableMemory   memory budget for the shared transposition table
+     */
+    public SessionManager(int threads, long sessionMemory, long totalMemory, long tableMemory)
+    {
+        if (threads < 1 || sessionMemory < 0 || totalMemory < 0) throw new IllegalArgumentException();
+        pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        table = new TranspositionTable(tableMemory);
+        this.sessionMemory = sessionMemory;
+        this.totalMemory = totalMemory;
+    }
+
+    /**
+     * Start a new game from the initial position.
+     */
+    public Session create()
+    {
+        final ReversiEngine engine = new ReversiEngine(table);
+        engine.setOpeningBook(book);
+        final Session session = new Session(nextId.getAndIncrement(), this, engine);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    /**
+     * Have sessions created from now on recall opening positions from <code>book</code>.
+     *
+     * @param book opening book, or null for none
+     */
+    public void setOpeningBook(OpeningBook book)
+    {
+        this.book = book;
+    }
+
+    /**
+     * @return the session with the given ID, or null if there is none
+     */
+    public Session get(long id)
+    {
+        return sessions.get(id);
+    }
+
+    /**
+     * End a game, giving back its tree once whatever was submitted to it has run.
+     *
+     * @return whether there was such a session
+     */
+    public boolean remove(long id)
+    {
+        final Session session = sessions.remove(id);
+        if (session == null) return false;
+        session.close();
+        return true;
+    }
+
+    public Collection<Session> getSessions()
+    {
+        return sessions.values();
+    }
+
+    public int getSessionCount()
+    {
+        return sessions.size();
+    }
+
+    /**
+     * @return number of tasks submitted to sessions which have not started yet
+     */
+    public int getQueueDepth()
+    {
+        return queued.get();
+    }
+
+    public int getThreads()
+    {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @return bytes held by all the game trees as of the last task each session finished
+     */
+    public long getTreeMemory()
+    {
+        return treeMemory.get();
+    }
+
+    public long getTableMemory()
+    {
+        return table.getMemory();
+    }
+
+    public long getSearches()
+    {
+        return searches.get();
+    }
+
+    public long getSessionMemory()
+    {
+        return sessionMemory;
+    }
+
+    public long getTotalMemory()
+    {
+        return totalMemory;
+    }
+
+    /**
+     * Stop taking work and let what was already submitted finish.
+     */
+    @Override
+    public void close()
+    {
+        pool.shutdown();
+    }
+
+    ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+    void queued(int delta)
+    {
+        queued.addAndGet(delta);
+    }
+
+    void searched()
+    {
+        if (searches.incrementAndGet() % Math.max(sessions.size(), 1) == 0) table.nextGeneration();
+    }
+
+    /**
+     * Record that a session's tree grew or shrank, and reclaim trees if they no longer fit together.
+     */
+    void allocated(Session session, long delta)
+    {
+        if (treeMemory.addAndGet(delta) > totalMemory && reclaiming.compareAndSet(false, true)) {
+            try {
+                reclaim(session);
+            } finally {
+                reclaiming.set(false);
+            }
+        }
+    }
+
+    /**
+     * Have the sessions used least recently give back their trees until the rest fit under the global cap.
+     * The trees are given back by tasks of their own sessions, so the count only drops as those tasks run.
+     *
+     * @param current session whose task is running now, which is left alone
+     */
+    private void reclaim(Session current)
+    {
+        // sessions go on being used while this runs, so sort by when they were last used as of now
+        final List<Map.Entry<Long, Session>> idle = new ArrayList<>(sessions.size());
+        for (final Session s : sessions.values()) {
+            idle.add(Map.entry(s.getLastUsed(), s));
+        }
+        idle.sort(Map.Entry.comparingByKey());
+        long excess = treeMemory.get() - totalMemory;
+        for (final Map.Entry<Long, Session> entry : idle) {
+            if (excess <= 0) break;
+            final Session s = entry.getValue();
+            if (s == current || s.getTreeMemory() <= GameTree.INITIAL_MEMORY) continue;
+            excess -= s.getTreeMemory() - GameTree.INITIAL_MEMORY;
+            s.release();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package io.github.thomashuss.reversi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Small HTTP front end to a {@link SessionManager}, for trying it out and load testing it locally.  Requests
+ * are answered asynchronously once the session's work is done, so the server's own thread never waits on a
+ * search.  Boards are 64 characters from a1 to h8, row by row, with <code>X</code> for dark, <code>O</code>
+ * for light and <code>-</code> for empty; moves are in the usual notation, such as <code>d3</code>.
+ * <pre>
+ *  POST   /sessions[?board=...&amp;color=X]   start a game; returns its ID
+ *  GET    /sessions/{id}                     board, color to move, last move and think latency, as of the
+ *                                            last task to finish
+ *  POST   /sessions/{id}/play?move=d3        play a move for the color to move
+ *  POST   /sessions/{id}/search              scored moves, best first
+ *  DELETE /sessions/{id}                     end a game
+ *  GET    /metrics                           sessions, queue depth and memory, as plain text
+ * </pre>
+ * Usage: <code>SessionServer [port [threads [book]]]</code>, where <code>book</code> is an {@link OpeningBook}.
+ */
+public final class SessionServer
+{
+    public static final int DEFAULT_PORT = 8080;
+
+    private final SessionManager manager;
+
+    private SessionServer(SessionManager manager)
+    {
+        this.manager = manager;
+    }
+
+    /**
+     * Serve <code>manager</code> on the given port.
+     *
+     * @return the server, already started
+     */
+    public static HttpServer start(SessionManager manager, int port)
+    throws IOException
+    {
+        final SessionServer server = new SessionServer(manager);
+        final HttpServer http = HttpServer.create(new InetSocketAddress(port), 0);
+        http.createContext("/sessions", server::sessions);
+        http.createContext("/metrics", server::metrics);
+        http.start();
+        return http;
+    }
+
+    public static void main(String[] args)
+    throws IOException
+    {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final SessionManager manager = new SessionManager(threads, SessionManager.DEFAULT_SESSION_MEMORY,
+                SessionManager.DEFAULT_TOTAL_MEMORY, TranspositionTable.DEFAULT_MEMORY);
+        if (args.length > 2) manager.setOpeningBook(new OpeningBook(Path.of(args[2])));
+        start(manager, port);
+        System.out.println("Serving on port " + port + " with " + threads + " threads");
+    }
+
+    private void sessions(HttpExchange exchange)
+    {
+        final String method = exchange.getRequestMethod();
+        final String[] path = exchange.getRequestURI().getPath().split("/");
+        final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        try {
+            if (path.length == 2) {
+                if (!method.equals("POST")) {
+                    respond(exchange, 405, "");
+                    return;
+                }
+                create(exchange, query);
+                return;
+            }
+            final Session session = manager.get(Long.parseLong(path[2]));
+            if (session == null || path.length > 4) {
+                respond(exchange, 404, "");
+            } else if (path.length == 3) {
+                switch (method) {
+                    case "GET" -> respond(exchange, 200, describe(session));
+                    case "DELETE" -> {
+                        manager.remove(session.getId());
+                        respond(exchange, 204, "");
+                    }
+                    default -> respond(exchange, 405, "");
+                }
+            } else if (!method.equals("POST")) {
+                respond(exchange, 405, "");
+            } else {
+                switch (path[3]) {
+                    case "play" -> play(exchange, session, query.get("move"));
+                    case "search" -> reply(exchange, session.search().thenApply(SessionServer::describe));
+                    default -> respond(exchange, 404, "");
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, "");
+        }
+    }
+
+    private void create(HttpExchange exchange, Map<String, String> query)
+    {
+        final String board = query.get("board");
+        if (board == null) {
+            respond(exchange, 201, "{\"id\":" + manager.create().getId() + "}");
+            return;
+        }
+        final long dark = parseBoard(board, 'X');
+        final long light = parseBoard(board, 'O');
+        final byte color = switch (query.getOrDefault("color", "X").toUpperCase()) {
+            case "X" -> Reversi.DARK;
+            case "O" -> Reversi.LIGHT;
+            default -> throw new IllegalArgumentException();
+        };
+        final Session session = manager.create();
+        final CompletableFuture<String> created = session.submit(e -> {
+            e.setPosition(dark, light, color);
+            return "{\"id\":" + session.getId() + "}";
+        });
+        // the client never learns the ID of a session whose position could not be set, so end it here
+        created.whenComplete((json, e) -> {
+            if (e != null) manager.remove(session.getId());
+        });
+        reply(exchange, 201, created);
+    }
+
+    private void play(HttpExchange exchange, Session session, String move)
+    {
+        if (move == null || move.length() != 2) throw new IllegalArgumentException();
+        final int col = Character.toLowerCase(move.charAt(0)) - 'a';
+        final int row = move.charAt(1) - '1';
+        if (row < 0 || row >= Reversi.ROWS || col < 0 || col >= Reversi.COLS) throw new IllegalArgumentException();
+        reply(exchange, session.play(row, col).thenApply(legal -> "{\"legal\":" + legal + "}"));
+    }
+
+    private void metrics(HttpExchange exchange)
+    {
+        final String body = "sessions " + manager.getSessionCount() + '\n'
+                + "threads " + manager.getThreads() + '\n'
+                + "queue_depth " + manager.getQueueDepth() + '\n'
+                + "searches " + manager.getSearches() + '\n'
+                + "tree_bytes " + manager.getTreeMemory() + '\n'
+                + "tree_bytes_cap " + manager.getTotalMemory() + '\n'
+                + "table_bytes " + manager.getTableMemory() + '\n';
+        respond(exchange, 200, "text/plain", body);
+    }
+
+    private static String describe(Session session)
+    {
+        final GameSnapshot snapshot = session.getSnapshot();
+        final SearchMetrics metrics = session.getMetrics();
+        final long last = snapshot.getLastMove();
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"id\":").append(session.getId()).append(",\"board\":\"");
+        for (int row = 0; row < Reversi.ROWS; row++) {
+            for (int col = 0; col < Reversi.COLS; col++) {
+                final byte piece = snapshot.at(row, col);
+                sb.append(piece == Reversi.DARK ? 'X' : piece == Reversi.LIGHT ? 'O' : '-');
+            }
+        }
+        sb.append("\",\"color\":\"").append(colorName(snapshot.getColor()))
+                .append("\",\"lastMove\":").append(last == -1 ? "null"
+                        : '"' + Reversi.encodeNotation(Reversi.getRow(last), Reversi.getCol(last)) + '"')
+                .append(",\"searches\":").append(session.getSearches())
+                .append(",\"meanSearchMicros\":").append(session.getMeanSearchNanos() / 1000)
+                .append(",\"maxSearchMicros\":").append(session.getMaxSearchNanos() / 1000)
+                .append(",\"lastSearchMicros\":").append(session.getLastSearchNanos() / 1000)
+                .append(",\"meanWaitMicros\":").append(session.getMeanWaitNanos() / 1000)
+                .append(",\"nodesExpanded\":").append(metrics.getNodesExpanded())
+                .append(",\"nodesReused\":").append(metrics.getNodesReused())
+                .append(",\"liveNodes\":").append(metrics.getLiveNodes())
+                .append(",\"treeBytes\":").append(session.getTreeMemory()).append('}');
+        return sb.toString();
+    }
+
+    private static String describe(SearchResult result)
+    {
+        final StringBuilder sb = new StringBuilder(64 + 24 * result.getMoveCount());
+        sb.append("{\"color\":\"").append(colorName(result.getColor()))
+                .append("\",\"pass\":").append(result.isPass())
+                .append(",\"gameOver\":").append(result.isGameOver())
+                .append(",\"dark\":").append(result.getDarkCount())
+                .append(",\"light\":").append(result.getLightCount())
+                .append(",\"moves\":[");
+        for (int i = 0; i < result.getMoveCount(); i++) {
+            final long move = result.getMove(i);
+            if (i != 0) sb.append(',');
+            sb.append("{\"move\":\"").append(Reversi.encodeNotation(Reversi.getRow(move), Reversi.getCol(move)))
+                    .append("\",\"score\":").append(result.getScore(i)).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String colorName(byte color)
+    {
+        return color == Reversi.DARK ? "X" : color == Reversi.LIGHT ? "O" : "-";
+    }
+
+    private static long parseBoard(String board, char piece)
+    {
+        if (board.length() != Bitboard.SQUARES) throw new IllegalArgumentException();
+        long b = 0;
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            final char c = Character.toUpperCase(board.charAt(sq));
+            if (c == piece) b |= 1L << sq;
+            else if (c != 'X' && c != 'O' && c != '-' && c != '.') throw new IllegalArgumentException();
+        }
+        return b;
+    }
+
+    private static Map<String, String> parseQuery(String query)
+    {
+        final Map<String, String> map = new HashMap<>();
+        if (query == null) return map;
+        for (final String pair : query.split("&")) {
+            final int eq = pair.indexOf('=');
+            if (eq > 0) map.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        return map;
+    }
+
+    private static void reply(HttpExchange exchange, CompletableFuture<String> body)
+    {
+        reply(exchange, 200, body);
+    }
+
+    private static void reply(HttpExchange exchange, int status, CompletableFuture<String> body)
+    {
+        body.whenComplete((json, e) -> {
+            if (e == null) respond(exchange, status, json);
+            else respond(exchange, 500, "");
+        });
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json)
+    {
+        respond(exchange, status, "application/json", json);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type, String body)
+    {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try (exchange; OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", type);
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            if (bytes.length != 0) out.write(bytes);
+        } catch (IOException ignored) {
+            // the client went away
+        }
+    }
+}
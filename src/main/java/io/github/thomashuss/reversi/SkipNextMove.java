@@ -1,6 +1,14 @@
 package io.github.thomashuss.reversi;
 
+/**
+ * Thrown by {@link Reversi#think} when the color to move has to pass.  It carries no stack trace, since it
+ * reports an ordinary turn of the game rather than an error.
+ */
 public class SkipNextMove
         extends Exception
 {
+    public SkipNextMove()
+    {
+        super(null, null, false, false);
+    }
 }
@@ -0,0 +1,269 @@
+package io.github.thomashuss.reversi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The game tree as the first search of a game leaves it, saved to a file so that new games can start from it
+ * instead of searching the initial position again.  The initial position is the same in every game, whichever
+ * color the human plays, so one file serves them all.
+ * <p>
+ * The file is mapped into memory and read a piece at a time: starting a game reads only the moves from the
+ * initial position, and the subtree below a move is read once that move is played or pondered.  Boards are not
+ * stored, since each node's board follows from its parent's and its square.  The file holds a header of the
+ * magic number and <code>MAX_DEPTH</code> as ints, the dark and light pieces as longs, and the number of moves
+ * and of nodes below them as ints.  Then come the moves, each a node followed by an int giving where the nodes
+ * below it start, and then those nodes.  A node is its square, its color with flags for whether it skips and
+ * whether it is expanded, and its number of children as bytes, followed by its score as a short.  The children
+ * of an expanded node are stored together, followed by everything below each of them in turn.
+ * <p>
+ * Usage: <code>StartTree file</code> builds the tree and saves it.
+ */
+public final class StartTree
+        implements Closeable
+{
+    private static final int MAGIC = 0x52565431;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int NODE_BYTES = 3 + Short.BYTES;
+    private static final int MOVE_BYTES = NODE_BYTES + Integer.BYTES;
+    private static final byte COLOR = 0x03;
+    private static final byte SKIP = 0x04;
+    private static final byte EXPANDED = 0x08;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int moves;
+
+    /**
+     * Map a tree saved by {@link #build} into memory.
+     */
+    public StartTree(Path path)
+    throws IOException
+    {
+        channel = FileChannel.open(path);
+        try {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new InvalidStartTree("Start tree too large: " + path);
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < HEADER_BYTES || map.getInt(0) != MAGIC) {
+                throw new InvalidStartTree("Not a start tree: " + path);
+            }
+            if (map.getInt(4) != TreeSearch.MAX_DEPTH) {
+                throw new InvalidStartTree("Start tree was built for a different depth: " + path);
+            }
+            if (map.getLong(8) != ReversiEngine.INITIAL_DARK || map.getLong(16) != ReversiEngine.INITIAL_LIGHT) {
+                throw new InvalidStartTree("Start tree is not of the initial position: " + path);
+            }
+            moves = map.getInt(24);
+            if (size != HEADER_BYTES + (long) moves * MOVE_BYTES + (long) map.getInt(28) * NODE_BYTES) {
+                throw new InvalidStartTree("Truncated start tree: " + path);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Map the tree saved at <code>path</code>, first building it there if there is none, or if the one there
+     * is damaged or was built for a different depth.  Any other error reading it is thrown, rather than
+     * overwriting a file which may be fine.
+     */
+    public static StartTree open(Path path)
+    throws IOException
+    {
+        try {
+            return new StartTree(path);
+        } catch (NoSuchFileException | InvalidStartTree e) {
+            build(path);
+            return new StartTree(path);
+        }
+    }
+
+    /**
+     * Start a fresh tree holding the initial position and the moves from it, scored but not yet expanded.
+     *
+     * @return the root node
+     */
+    int reset(GameTree tree)
+    {
+        final int root = tree.reset(Reversi.LIGHT, ReversiEngine.INITIAL_DARK, ReversiEngine.INITIAL_LIGHT);
+        final int first = tree.allocate(moves);
+        tree.setChildren(root, first, moves);
+        for (int i = 0; i < moves; i++) {
+            set(tree, root, first + i, HEADER_BYTES + i * MOVE_BYTES);
+        }
+        return root;
+    }
+
+    /**
+     * Expand a move from the root made by {@link #reset} with everything saved below it.
+     *
+     * @param m move from the root, not yet expanded
+     * @return whether <code>m</code> is now expanded
+     */
+    boolean load(GameTree tree, int m)
+    {
+        final int sq = tree.getSquare(m);
+        for (int i = 0; i < moves; i++) {
+            final int at = HEADER_BYTES + i * MOVE_BYTES;
+            if (map.get(at) == sq) {
+                expand(tree, m, at, map.getInt(at + NODE_BYTES));
+                return tree.isExpanded(m);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close()
+    throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Search the initial position as the first search of a game would and save the tree to <code>path</code>.
+     *
+     * @return number of nodes saved, not counting the root
+     */
+    public static int build(Path path)
+    throws IOException
+    {
+        final GameTree tree = new GameTree();
+        final TreeSearch search = new TreeSearch(tree, new TranspositionTable(TranspositionTable.DEFAULT_MEMORY));
+        final int root = tree.reset(Reversi.LIGHT, ReversiEngine.INITIAL_DARK, ReversiEngine.INITIAL_LIGHT);
+        search.update(root, 0, null, null);
+        final int first = tree.getFirst(root);
+        final int moves = tree.getCount(root);
+        int nodes = 0;
+        for (int m = first; m < first + moves; m++) {
+            nodes += countBelow(tree, m);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + moves * MOVE_BYTES + nodes * NODE_BYTES);
+        buffer.putInt(MAGIC).putInt(TreeSearch.MAX_DEPTH)
+                .putLong(ReversiEngine.INITIAL_DARK).putLong(ReversiEngine.INITIAL_LIGHT)
+                .putInt(moves).putInt(nodes);
+        int below = HEADER_BYTES + moves * MOVE_BYTES;
+        for (int i = 0; i < moves; i++) {
+            buffer.position(HEADER_BYTES + i * MOVE_BYTES);
+            put(tree, first + i, buffer);
+            buffer.putInt(below).position(below);
+            putBelow(tree, first + i, buffer);
+            below = buffer.position();
+        }
+        buffer.flip();
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) out.write(buffer);
+        }
+        return moves + nodes;
+    }
+
+    /**
+     * Fill in <code>node</code>, a child of <code>parent</code>, from the record at <code>at</code>.  It is
+     * left unexpanded.
+     */
+    private void set(GameTree tree, int parent, int node, int at)
+    {
+        final int sq = map.get(at);
+        final byte color = (byte) (map.get(at + 1) & COLOR);
+        final long own = color == Reversi.DARK ? tree.getDark(parent) : tree.getLight(parent);
+        final long opp = color == Reversi.DARK ? tree.getLight(parent) : tree.getDark(parent);
+        final long flips = Bitboard.flips(own, opp, sq);
+        final long newOwn = own | flips | (1L << sq);
+        final long newOpp = opp & ~flips;
+        if (color == Reversi.DARK) tree.set(node, color, sq, Bitboard.count(flips) + 1, newOwn, newOpp);
+        else tree.set(node, color, sq, Bitboard.count(flips) + 1, newOpp, newOwn);
+        tree.setScore(node, map.getShort(at + 3));
+    }
+
+    /**
+     * Give <code>node</code>, filled in from the record at <code>at</code>, the flags and the children saved
+     * for it, and so on down.
+     *
+     * @param below where the nodes below <code>node</code> start
+     * @return where the nodes after them start
+     */
+    private int expand(GameTree tree, int node, int at, int below)
+    {
+        final byte flags = map.get(at + 1);
+        if ((flags & SKIP) != 0) tree.setSkipNext(node);
+        if ((flags & EXPANDED) == 0) return below;
+        final int count = map.get(at + 2) & 0xff;
+        final int first = tree.allocate(count);
+        tree.setChildren(node, first, count);
+        for (int i = 0; i < count; i++) {
+            set(tree, node, first + i, below + i * NODE_BYTES);
+        }
+        int next = below + count * NODE_BYTES;
+        for (int i = 0; i < count; i++) {
+            next = expand(tree, first + i, below + i * NODE_BYTES, next);
+        }
+        return next;
+    }
+
+    private static int countBelow(GameTree tree, int node)
+    {
+        if (!tree.isExpanded(node)) return 0;
+        final int first = tree.getFirst(node);
+        final int end = first + tree.getCount(node);
+        int n = end - first;
+        for (int c = first; c < end; c++) {
+            n += countBelow(tree, c);
+        }
+        return n;
+    }
+
+    private static void put(GameTree tree, int node, ByteBuffer buffer)
+    {
+        final int score = tree.getScore(node);
+        if (score != (short) score) throw new IllegalStateException();
+        buffer.put((byte) tree.getSquare(node))
+                .put((byte) (tree.getWhoseTurn(node) | (tree.shouldSkipNext(node) ? SKIP : 0)
+                        | (tree.isExpanded(node) ? EXPANDED : 0)))
+                .put((byte) (tree.isExpanded(node) ? tree.getCount(node) : 0))
+                .putShort((short) score);
+    }
+
+    private static void putBelow(GameTree tree, int node, ByteBuffer buffer)
+    {
+        if (!tree.isExpanded(node)) return;
+        final int first = tree.getFirst(node);
+        final int end = first + tree.getCount(node);
+        for (int c = first; c < end; c++) {
+            put(tree, c, buffer);
+        }
+        for (int c = first; c < end; c++) {
+            putBelow(tree, c, buffer);
+        }
+    }
+
+    public static void main(String[] args)
+    throws IOException
+    {
+        final long start = System.nanoTime();
+        final int n = build(Path.of(args[0]));
+        System.out.printf("%d nodes in %.1f ms%n", n, (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Thrown when a file is readable but does not hold a start tree which can be used, so that it is safe to
+     * build one over it.
+     */
+    private static final class InvalidStartTree
+            extends IOException
+    {
+        InvalidStartTree(String message)
+        {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package io.github.thomashuss.reversi;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Plays the computer against stand-ins for the human without the Swing game, to tune rubberbanding and the
+ * search by the numbers rather than by hand.  Every computer setting plays every opponent, the human's color
+ * alternating from game to game, and the games are spread over a pool of threads.  Each game starts with a
+ * new engine on either side, so that nothing learned in one game affects the next, and game <code>i</code> of
+ * a pairing is always played with the same random numbers, so results do not depend on the number of threads.
+ * <p>
+ * Computer settings are comma-separated <code>key=value</code> pairs: <code>alpha</code>, <code>depth</code>
+ * (alpha-beta plies, or 0 for the game tree), <code>tolerance</code>, <code>millis</code> and
+ * <code>nodes</code> (search budget), <code>patterns</code> (1 to evaluate patterns in alpha-beta search),
+ * <code>mcts</code> (1 for Monte Carlo tree search within the search budget), <code>tree</code> (tree budget in
+ * nodes) and <code>solve</code> (empty squares at which to solve the endgame).  Opponents are one of
+ * <ul>
+ *     <li><code>human[:skill=s,noise=n]</code>, who aims for moves rated <code>s</code> by the same measure
+ *     rubberbanding uses, from -1 for the worst to 1 for the best, give or take normally distributed noise
+ *     with standard deviation <code>n</code>;</li>
+ *     <li><code>best[:depth=d,millis=m,patterns=p,mcts=c]</code>, an engine of its own which always plays its
+ *     best move; and</li>
+ *     <li><code>random</code>, who plays any legal move.</li>
+ * </ul>
+ * Usage: <code>Tournament [-games n] [-threads n] [-seed n] [-records file] [-book file]
+ * [-computer settings]... [-opponent opponent]...</code>.  Finished games are appended to the records file as
+ * {@link GameRecord}s, and the computer recalls opening positions from the {@link OpeningBook}, if given.
+ */
+public final class Tournament
+{
+    public static final int DEFAULT_GAMES = 100;
+    private static final List<String> COMPUTER_KEYS =
+            List.of("alpha", "depth", "tolerance", "millis", "nodes", "patterns", "mcts", "tree", "solve");
+
+    private Tournament()
+    {
+    }
+
+    /**
+     * Stand-in for the human, choosing moves from those the computer has just scored for the human.
+     */
+    interface Opponent
+    {
+        /**
+         * @param game the game, with the human to move and the human's moves scored
+         * @return move to play, encoded as by {@link Reversi#encode}
+         */
+        long choose(GameSnapshot game, Random random);
+    }
+
+    /**
+     * Totals for one computer setting against one opponent.
+     */
+    static final class Result
+    {
+        int games;
+        int wins;
+        int losses;
+        /**
+         * Sums over all games of the computer's pieces minus the opponent's, and of its absolute value.
+         */
+        long margin;
+        long absMargin;
+        double humanAverage;
+        /**
+         * Time taken by each search, in nanoseconds.
+         */
+        long[] thinkNanos = new long[0];
+        int thinks;
+
+        private synchronized void add(Result r)
+        {
+            games += r.games;
+            wins += r.wins;
+            losses += r.losses;
+            margin += r.margin;
+            absMargin += r.absMargin;
+            humanAverage += r.humanAverage;
+            thinkNanos = Arrays.copyOf(thinkNanos, thinks + r.thinks);
+            System.arraycopy(r.thinkNanos, 0, thinkNanos, thinks, r.thinks);
+            thinks += r.thinks;
+        }
+
+        private void think(long nanos)
+        {
+            if (thinks == thinkNanos.length) thinkNanos = Arrays.copyOf(thinkNanos, Math.max(64, 2 * thinks));
+            thinkNanos[thinks++] = nanos;
+        }
+
+        /**
+         * @param fraction between 0 and 1
+         * @return think time at the given percentile, in nanoseconds; <code>thinkNanos</code> must be sorted
+         */
+        private long percentile(double fraction)
+        {
+            return thinks == 0 ? 0 : thinkNanos[Math.min(thinks - 1, (int) (fraction * thinks))];
+        }
+
+        @Override
+        public String toString()
+        {
+            Arrays.sort(thinkNanos, 0, thinks);
+            long total = 0;
+            for (int i = 0; i < thinks; i++) total += thinkNanos[i];
+            final double n = Math.max(games, 1);
+            return String.format("%d games, won %.1f%% lost %.1f%% drawn %.1f%%, margin %+.2f (abs %.2f), "
+                            + "human average %.3f, think ms mean %.2f p50 %.2f p99 %.2f max %.2f",
+                    games, 100 * wins / n, 100 * losses / n, 100 * (games - wins - losses) / n, margin / n,
+                    absMargin / n, humanAverage / n, thinks == 0 ? 0 : total / 1e6 / thinks, percentile(0.5) / 1e6,
+                    percentile(0.99) / 1e6, percentile(1) / 1e6);
+        }
+    }
+
+    /**
+     * Play <code>games</code> games of the computer with <code>settings</code> against <code>opponent</code>.
+     *
+     * @param opponent makes a new opponent for each game
+     * @param book     opening book for the computer, or null
+     * @param records  receives each finished game, or null
+     */
+    static Result play(String settings, Supplier<Opponent> opponent, int games, long seed, ExecutorService pool,
+                       int threads, OpeningBook book, GameRecordWriter records)
+    throws Exception
+    {
+        final Result total = new Result();
+        final AtomicInteger next = new AtomicInteger();
+        final List<Future<?>> workers = new ArrayList<>(threads);
+        parseSettings(settings, COMPUTER_KEYS);
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                final Result result = new Result();
+                for (int i; (i = next.getAndIncrement()) < games; ) {
+                    final Reversi game = new Reversi(s -> {
+                    });
+                    configure(game, settings);
+                    game.setOpeningBook(book);
+                    play(game, opponent.get(), i % 2 == 0 ? Reversi.DARK : Reversi.LIGHT,
+                            new Random(seed * 1_000_003 + i), result, records);
+                }
+                total.add(result);
+                return null;
+            }));
+        }
+        for (final Future<?> worker : workers) worker.get();
+        return total;
+    }
+
+    /**
+     * Play one game through to the end.
+     */
+    private static void play(Reversi game, Opponent opponent, byte humanColor, Random random, Result result,
+                             GameRecordWriter records)
+    throws IOException
+    {
+        game.setHumanColor(humanColor);
+        long start = System.nanoTime();
+        game.init();
+        result.think(System.nanoTime() - start);
+        while (true) {
+            final GameSnapshot snapshot = game.getSnapshot();
+            if (snapshot.getColor() == humanColor) {
+                final long move = opponent.choose(snapshot, random);
+                if (!game.play(Reversi.getRow(move), Reversi.getCol(move))) throw new IllegalStateException();
+            } else if (game.computerPlay() == -1) {
+                throw new IllegalStateException();
+            }
+            start = System.nanoTime();
+            try {
+                game.think();
+            } catch (Endgame e) {
+                result.think(System.nanoTime() - start);
+                break;
+            } catch (SkipNextMove e) {
+                // the same color moves again
+            }
+            result.think(System.nanoTime() - start);
+        }
+        final GameSnapshot end = game.getSnapshot();
+        final int margin = humanColor == Reversi.DARK ? end.getLightCount() - end.getDarkCount()
+                : end.getDarkCount() - end.getLightCount();
+        result.games++;
+        if (margin > 0) result.wins++;
+        else if (margin < 0) result.losses++;
+        result.margin += margin;
+        result.absMargin += Math.abs(margin);
+        result.humanAverage += game.getHumanAverage();
+        if (records != null) {
+            final GameRecord record = game.getRecord();
+            synchronized (records) {
+                records.write(record);
+            }
+        }
+    }
+
+    /**
+     * Apply computer settings to <code>game</code>.
+     */
+    static void configure(Reversi game, String settings)
+    {
+        final Map<String, String> map = parseSettings(settings, COMPUTER_KEYS);
+        game.setAlpha(Double.parseDouble(map.getOrDefault("alpha", String.valueOf(Reversi.DEFAULT_ALPHA))));
+        game.setSearchDepth(Integer.parseInt(map.getOrDefault("depth", "0")),
+                Integer.parseInt(map.getOrDefault("tolerance", "0")));
+        game.setSearchBudget(Long.parseLong(map.getOrDefault("millis", "0")),
+                Long.parseLong(map.getOrDefault("nodes", "0")));
+        game.setPatternEvaluation(map.getOrDefault("patterns", "0").equals("1"));
+        game.setMonteCarlo(map.getOrDefault("mcts", "0").equals("1"));
+        game.setTreeBudget(Integer.parseInt(map.getOrDefault("tree", "0")));
+        game.setEndgameSolver(Integer.parseInt(map.getOrDefault("solve",
+                String.valueOf(EndgameSolver.DEFAULT_EMPTIES))), true);
+    }
+
+    /**
+     * @return a factory for the opponent described by <code>spec</code>
+     */
+    static Supplier<Opponent> parseOpponent(String spec)
+    {
+        final int colon = spec.indexOf(':');
+        final String kind = colon < 0 ? spec : spec.substring(0, colon);
+        final String settings = colon < 0 ? "" : spec.substring(colon + 1);
+        return switch (kind) {
+            case "human" -> {
+                final Map<String, String> map = parseSettings(settings, List.of("skill", "noise"));
+                final double skill = Double.parseDouble(map.getOrDefault("skill", "0.5"));
+                final double noise = Double.parseDouble(map.getOrDefault("noise", "0.25"));
+                yield () -> (game, random) -> human(game, skill + noise * random.nextGaussian());
+            }
+            case "best" -> {
+                final Map<String, String> map = parseSettings(settings,
+                        List.of("depth", "millis", "patterns", "mcts"));
+                final int depth = Integer.parseInt(map.getOrDefault("depth", "0"));
+                final long millis = Long.parseLong(map.getOrDefault("millis", "0"));
+                final boolean patterns = map.getOrDefault("patterns", "0").equals("1");
+                final boolean mcts = map.getOrDefault("mcts", "0").equals("1");
+                yield () -> {
+                    final ReversiEngine engine = new ReversiEngine();
+                    final SearchResult result = new SearchResult();
+                    engine.setSearchDepth(depth);
+                    engine.setSearchBudget(millis, 0);
+                    engine.setPatternEvaluation(patterns);
+                    engine.setMonteCarlo(mcts);
+                    return (game, random) -> {
+                        engine.setPosition(game.getDark(), game.getLight(), game.getColor());
+                        engine.search(result);
+                        return result.getBestMove();
+                    };
+                };
+            }
+            case "random" -> {
+                parseSettings(settings, List.of());
+                yield () -> (game, random) -> game.getMove(random.nextInt(game.getMoveCount()));
+            }
+            default -> throw new IllegalArgumentException("Unknown opponent: " + kind);
+        };
+    }
+
+    /**
+     * @return the move rated closest to <code>target</code>
+     */
+    private static long human(GameSnapshot game, double target)
+    {
+        final int n = game.getMoveCount();
+        final int best = game.getScore(0);
+        final int worst = game.getScore(n - 1);
+        int choice = 0;
+        double d, closest = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            d = Math.abs(Reversi.computeScore(game.getScore(i), best, worst) - target);
+            if (d < closest) {
+                closest = d;
+                choice = i;
+            }
+        }
+        return game.getMove(choice);
+    }
+
+    /**
+     * @param keys keys which may appear
+     */
+    private static Map<String, String> parseSettings(String settings, List<String> keys)
+    {
+        final Map<String, String> map = new HashMap<>();
+        for (final String pair : settings.split(",")) {
+            if (pair.isEmpty()) continue;
+            final int eq = pair.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Expected key=value: " + pair);
+            if (!keys.contains(pair.substring(0, eq))) throw new IllegalArgumentException("Unknown setting: " + pair);
+            map.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        return map;
+    }
+
+    public static void main(String[] args)
+    throws Exception
+    {
+        int games = DEFAULT_GAMES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 0;
+        Path records = null;
+        OpeningBook book = null;
+        final List<String> computers = new ArrayList<>();
+        final List<String> opponents = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-games" -> games = Integer.parseInt(args[++i]);
+                case "-threads" -> threads = Integer.parseInt(args[++i]);
+                case "-seed" -> seed = Long.parseLong(args[++i]);
+                case "-records" -> records = Path.of(args[++i]);
+                case "-book" -> book = new OpeningBook(Path.of(args[++i]));
+                case "-computer" -> computers.add(args[++i]);
+                case "-opponent" -> opponents.add(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (computers.isEmpty()) computers.add("");
+        if (opponents.isEmpty()) opponents.add("human");
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (GameRecordWriter writer = records == null ? null : new GameRecordWriter(records)) {
+            for (final String computer : computers) {
+                for (final String opponent : opponents) {
+                    final long start = System.nanoTime();
+                    final Result result = play(computer, parseOpponent(opponent), games, seed, pool, threads, book,
+                            writer);
+                    System.out.printf("computer [%s] vs %s: %s, %.1f s%n", computer, opponent, result,
+                            (System.nanoTime() - start) / 1e9);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
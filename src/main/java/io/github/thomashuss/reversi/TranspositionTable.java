@@ -0,0 +1,145 @@
+package io.github.thomashuss.reversi;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size table of search results keyed by {@link Zobrist} hash.  Each bucket has two slots: the first
+ * keeps the deepest result seen in the current generation, and the second takes whatever the first would
+ * not.  Entries are packed into a single long:
+ * <pre>
+ *  bits  0-15  score, offset by 0x8000
+ *  bits 16-23  depth, at least 1 for any stored entry, or SOLVED
+ *  bits 24-25  bound
+ *  bits 26-32  best move, or NO_MOVE
+ *  bits 40-47  generation
+ * </pre>
+ * The table may be shared by threads without locking.  Each slot stores its key XORed with its entry, so a
+ * slot torn by two threads writing at once no longer matches either key and just reads as a miss.  The
+ * probe, hit and store counts may lose updates while threads share the table.
+ */
+final class TranspositionTable
+{
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+    static final int NO_MOVE = 0x7f;
+    /**
+     * Depth recorded for a score from {@link EndgameSolver}, which is a final piece difference rather than a
+     * search score and so must never be mistaken for one.
+     */
+    static final int SOLVED = 0xff;
+    static final long DEFAULT_MEMORY = 16L << 20;
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;
+    private static final int MAX_ENTRIES = 1 << 30;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+    private long generation;
+    private long probes;
+    private long hits;
+
+    /**
+     * @param bytes memory budget; the table uses the largest power-of-two number of entries that fits
+     */
+    TranspositionTable(long bytes)
+    {
+        final int n = (int) Math.min(MAX_ENTRIES, Long.highestOneBit(Math.max(bytes / ENTRY_BYTES, 2)));
+        keys = new long[n];
+        entries = new long[n];
+        mask = (n >> 1) - 1;
+    }
+
+    long getMemory()
+    {
+        return (long) keys.length * ENTRY_BYTES;
+    }
+
+    long getProbes()
+    {
+        return probes;
+    }
+
+    long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Start a new generation, so that deep results left over from earlier turns can be displaced.
+     */
+    void nextGeneration()
+    {
+        generation = (generation + 1) & 0xff;
+    }
+
+    /**
+     * Forget every entry and reset the counters.  Entries stay correct from one game to the next, so the
+     * engine never clears its table; this is for the benchmarks, which need every run to start from an empty
+     * table so that runs can be compared.
+     */
+    void clear()
+    {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+        probes = hits = 0;
+    }
+
+    /**
+     * @param key   position hash
+     * @param depth preferred depth
+     * @return the entry for <code>key</code> searched to exactly <code>depth</code> if there is one, otherwise
+     * any entry for <code>key</code>, otherwise 0
+     */
+    long probe(long key, int depth)
+    {
+        probes++;
+        final int i = ((int) key & mask) << 1;
+        long first = entries[i], second = entries[i + 1];
+        if ((keys[i] ^ first) != key) first = 0;
+        if ((keys[i + 1] ^ second) != key) second = 0;
+        final long entry = first != 0 && (depth(first) == depth || second == 0) ? first : second;
+        if (entry != 0) hits++;
+        return entry;
+    }
+
+    void store(long key, int depth, int score, int bound, int move)
+    {
+        final int i = ((int) key & mask) << 1;
+        final long entry = (score + 0x8000L) | (long) depth << 16 | (long) bound << 24 | (long) move << 26
+                | generation << 40;
+        final long first = entries[i];
+        if (first == 0 || (keys[i] ^ first) == key || depth >= depth(first) || generation(first) != generation) {
+            keys[i] = key ^ entry;
+            entries[i] = entry;
+        } else {
+            keys[i + 1] = key ^ entry;
+            entries[i + 1] = entry;
+        }
+    }
+
+    static int score(long entry)
+    {
+        return (int) (entry & 0xffff) - 0x8000;
+    }
+
+    static int depth(long entry)
+    {
+        return (int) (entry >>> 16) & 0xff;
+    }
+
+    static int bound(long entry)
+    {
+        return (int) (entry >>> 24) & 0x3;
+    }
+
+    static int move(long entry)
+    {
+        return (int) (entry >>> 26) & 0x7f;
+    }
+
+    private static long generation(long entry)
+    {
+        return (entry >>> 40) & 0xff;
+    }
+}
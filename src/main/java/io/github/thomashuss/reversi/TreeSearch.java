@@ -0,0 +1,429 @@
+package io.github.thomashuss.reversi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Expands and scores the cached game tree held in one {@link GameTree}.  A move's score is the pieces it
+ * gains minus the score of the best reply, down to <code>MAX_DEPTH</code> replies below the moves available
+ * now.  Only the moves available now are kept sorted; further down a score needs just the best reply, which is
+ * picked out in one pass, so replies are left in the order they were generated.
+ * <p>
+ * The replies to the moves available now can also be brought up to date in parallel.  Each reply becomes a
+ * task which copies its subtree into a worker's own tree, reconsiders it there and is then grafted back, so
+ * no two threads ever write to the same tree.  Scores do not depend on which positions happen to be found in
+ * the shared transposition table first, so the result is the same as the sequential search.
+ */
+final class TreeSearch
+{
+    static final byte MAX_DEPTH = 4;
+    /**
+     * Deepest layer at which nodes evicted by {@link GameTree#prune} are expanded again; below it they keep the
+     * score they had until the game comes closer.
+     */
+    static final int REGENERATE_LAYER = 1;
+    /**
+     * The cancel token is checked once for every this many nodes generated or reconsidered.
+     */
+    private static final int CHECK_INTERVAL = 256;
+
+    private final GameTree tree;
+    private TranspositionTable table;
+    private OpeningBook book;
+    private CancelToken token = CancelToken.NEVER;
+    private int checks;
+    /**
+     * Scratch searches for parallel tasks, one per task, kept between turns so that their trees are reused.
+     */
+    private final List<TreeSearch> workers = new ArrayList<>();
+    private long expanded;
+    private long reused;
+    private long recalled;
+    private long sortNanos;
+
+    TreeSearch(GameTree tree, TranspositionTable table)
+    {
+        this.tree = tree;
+        this.table = table;
+    }
+
+    void setTable(TranspositionTable table)
+    {
+        this.table = table;
+    }
+
+    /**
+     * @param book book to recall opening positions from before the transposition table, or null
+     */
+    void setBook(OpeningBook book)
+    {
+        this.book = book;
+    }
+
+    /**
+     * @param token token to stop the search with; a stopped search throws {@link SearchCancelled}, leaving the
+     *              tree with some scores out of date but otherwise whole
+     */
+    void setToken(CancelToken token)
+    {
+        this.token = token;
+    }
+
+    /**
+     * @return nodes generated so far
+     */
+    long getExpanded()
+    {
+        return expanded;
+    }
+
+    /**
+     * @return nodes reconsidered so far which had already been expanded
+     */
+    long getReused()
+    {
+        return reused;
+    }
+
+    /**
+     * @return nodes scored from the transposition table so far
+     */
+    long getRecalled()
+    {
+        return recalled;
+    }
+
+    /**
+     * @return time spent sorting the moves available now so far
+     */
+    long getSortNanos()
+    {
+        return sortNanos;
+    }
+
+    /**
+     * Bring the moves available after <code>m</code> up to date now that it has been played: generate them if
+     * need be, then score them exactly with <code>solver</code> if it can solve the position, or reconsider
+     * them otherwise, and sort them.  If the color to move has to pass, the moves are those of the color which
+     * played <code>m</code>, and <code>m</code> is marked as skipping.
+     *
+     * @param m      the move just made
+     * @param done   number of moves at the front which are already up to date
+     * @param solver endgame solver, or null
+     * @param pool   pool to reconsider the moves on, or null to reconsider them on this thread
+     * @return whether there are any moves; if not, the game is over
+     */
+    boolean update(int m, int done, EndgameSolver solver, ForkJoinPool pool)
+    {
+        if (!tree.isExpanded(m)) {
+            final SearchPhaseEvent event = SearchEvents.startPhase("open");
+            final boolean any = open(m);
+            SearchEvents.finishPhase(event, tree.size());
+            if (!any) return false;
+        }
+        final int first = tree.getFirst(m);
+        final int end = first + tree.getCount(m);
+        if (first == end) return false;
+        SearchPhaseEvent event;
+        if (solver != null && solver.canSolve(tree.getDark(m), tree.getLight(m))) {
+            event = SearchEvents.startPhase("solve");
+            for (int n = first + done; n < end; n++) {
+                tree.setScore(n, solver.solveAfter(tree, n));
+            }
+        } else if (pool == null) {
+            event = SearchEvents.startPhase("reconsider");
+            for (int n = first + done; n < end; n++) {
+                reconsider(n, 0);
+            }
+        } else {
+            event = SearchEvents.startPhase("reconsider in parallel");
+            reconsider(m, done, pool);
+        }
+        SearchEvents.finishPhase(event, tree.size());
+        event = SearchEvents.startPhase("sort");
+        sort(m);
+        SearchEvents.finishPhase(event, tree.size());
+        return true;
+    }
+
+    /**
+     * Bring the subtree under <code>m</code> up to date now that the game has advanced: expand anything above
+     * the horizon which has not been expanded yet and recompute scores on the way back up.  Evicted nodes
+     * deeper than <code>REGENERATE_LAYER</code> are only rescored if the transposition table has them.
+     *
+     * @param m     move to reconsider
+     * @param layer distance of <code>m</code> from the current position; 0 for the moves available now
+     */
+    void reconsider(int m, int layer)
+    {
+        if (!tree.isExpanded(m)) {
+            if (layer < MAX_DEPTH && !recall(m, layer) && (layer <= REGENERATE_LAYER || !tree.isEvicted(m))) {
+                expand(m, (byte) (layer + 1));
+            }
+        } else if (tree.getCount(m) != 0) {
+            final int first = tree.getFirst(m);
+            final int end = first + tree.getCount(m);
+            check();
+            reused += end - first;
+            for (int n = first; n < end; n++) {
+                reconsider(n, layer + 1);
+            }
+            score(m, layer + 1);
+        }
+    }
+
+    /**
+     * Reconsider the children of <code>m</code> as {@link #reconsider} would at layer 0, spreading the work
+     * over <code>pool</code>.  <code>m</code> must be expanded.
+     *
+     * @param m    the move just made
+     * @param done number of children at the front which are already up to date
+     * @param pool pool to run the replies to each child on
+     */
+    void reconsider(int m, int done, ForkJoinPool pool)
+    {
+        final int first = tree.getFirst(m) + done;
+        final int end = tree.getFirst(m) + tree.getCount(m);
+        int tasks = 0;
+
+        for (int n = first; n < end; n++) {
+            if (!tree.isExpanded(n)) {
+                if (recall(n, 0)) continue;
+                open(n);
+            } else {
+                reused += tree.getCount(n);
+            }
+            final int start = tree.getFirst(n);
+            final int stop = start + tree.getCount(n);
+            for (int r = start; r < stop; r++) {
+                if (tasks == workers.size()) workers.add(new TreeSearch(new GameTree(), table));
+                workers.get(tasks++).prepare(tree, r, this);
+            }
+        }
+
+        try {
+            pool.invoke(new Replies(workers, tasks));
+        } finally {
+            for (int i = 0; i < tasks; i++) {
+                final TreeSearch worker = workers.get(i);
+                expanded += worker.expanded;
+                reused += worker.reused;
+                recalled += worker.recalled;
+                worker.expanded = worker.reused = worker.recalled = 0;
+            }
+        }
+
+        tasks = 0;
+        for (int n = first; n < end; n++) {
+            if (!tree.isExpanded(n) || tree.getCount(n) == 0) continue;
+            final int start = tree.getFirst(n);
+            final int stop = start + tree.getCount(n);
+            for (int r = start; r < stop; r++) {
+                tree.graft(r, workers.get(tasks++).tree, 0);
+            }
+            score(n, 1);
+        }
+    }
+
+    /**
+     * Copy a reply to one of the moves available now out of <code>from</code> so that it can be reconsidered
+     * on another thread.
+     */
+    private void prepare(GameTree from, int node, TreeSearch parent)
+    {
+        table = parent.table;
+        book = parent.book;
+        token = parent.token;
+        tree.copyOf(from, node);
+    }
+
+    /**
+     * Generate the replies to <code>m</code> down to <code>MAX_DEPTH</code> and score <code>m</code>
+     * accordingly.  If the other color cannot reply, the same color moves again.
+     *
+     * @param m     move to expand
+     * @param depth recursion depth of the replies
+     */
+    private void expand(int m, byte depth)
+    {
+        if (!open(m)) return;
+        if (depth != MAX_DEPTH) {
+            final int first = tree.getFirst(m);
+            final int end = first + tree.getCount(m);
+            for (int n = first; n < end; n++) {
+                if (!recall(n, depth)) expand(n, (byte) (depth + 1));
+            }
+        }
+        score(m, depth);
+    }
+
+    /**
+     * Generate the replies to <code>m</code> without expanding them.  If the other color cannot reply, the
+     * same color moves again.
+     *
+     * @return whether there are any replies; if not, the game ends after <code>m</code>
+     */
+    boolean open(int m)
+    {
+        final byte color = tree.getWhoseTurn(m);
+        if (generate(m, color == Reversi.DARK ? Reversi.LIGHT : Reversi.DARK) != 0) return true;
+        if (generate(m, color) != 0) {
+            tree.setSkipNext(m);
+            return true;
+        }
+        tree.setChildren(m, 0, 0);
+        return false;
+    }
+
+    /**
+     * Generate all moves for the given color from the board at <code>parent</code> and store them as its
+     * children, unexpanded.
+     *
+     * @param parent node holding the current board
+     * @param color  color for which moves are to be generated
+     * @return number of moves generated; if 0, <code>parent</code> is left untouched
+     */
+    int generate(int parent, byte color)
+    {
+        final long own = color == Reversi.DARK ? tree.getDark(parent) : tree.getLight(parent);
+        final long opp = color == Reversi.DARK ? tree.getLight(parent) : tree.getDark(parent);
+        final long legal = Bitboard.moves(own, opp);
+        final int n = Bitboard.count(legal);
+        if (n == 0) return 0;
+        check();
+        final int first = tree.allocate(n);
+        long flips, newOwn, newOpp;
+        int sq, gain, m = first;
+
+        expanded += n;
+        tree.setChildren(parent, first, n);
+        for (long l = legal; l != 0; l &= l - 1, m++) {
+            sq = Long.numberOfTrailingZeros(l);
+            flips = Bitboard.flips(own, opp, sq);
+            gain = Bitboard.count(flips) + 1;
+            newOwn = own | flips | (1L << sq);
+            newOpp = opp & ~flips;
+            if (color == Reversi.DARK) tree.set(m, color, sq, gain, newOwn, newOpp);
+            else tree.set(m, color, sq, gain, newOpp, newOwn);
+        }
+        return n;
+    }
+
+    /**
+     * Recursively generate all possible outcomes for the given color from the board at <code>parent</code>,
+     * storing them as its children.  Does not allow depth to exceed <code>MAX_DEPTH</code>; e.g., for
+     * <code>MAX_DEPTH = 2</code>, 3 layers will be generated.  Positions already in the transposition table are
+     * scored but left unexpanded.
+     *
+     * @param parent node holding the current board
+     * @param color  color for which moves are to be generated
+     * @param depth  recursion depth
+     * @return number of moves generated; if 0, <code>parent</code> is left untouched
+     */
+    int think(int parent, byte color, byte depth)
+    {
+        final int n = generate(parent, color);
+        if (n != 0 && depth != MAX_DEPTH) {
+            final int first = tree.getFirst(parent);
+            for (int m = first; m < first + n; m++) {
+                if (!recall(m, depth)) expand(m, (byte) (depth + 1));
+            }
+        }
+        return n;
+    }
+
+    private void check()
+    {
+        if ((++checks & (CHECK_INTERVAL - 1)) == 0) token.check();
+    }
+
+    /**
+     * Score <code>m</code> by its best reply and remember the position after it in the transposition table.
+     *
+     * @param m     move to score
+     * @param depth recursion depth of the replies
+     */
+    private void score(int m, int depth)
+    {
+        final int best = tree.bestChild(m);
+        tree.setScore(m, tree.shouldSkipNext(m) ? tree.getGain(m) + tree.getScore(best)
+                : tree.getGain(m) - tree.getScore(best));
+        final int remaining = MAX_DEPTH - depth + 1;
+        if (remaining > 1) {
+            final boolean dark = tree.getWhoseTurn(best) == Reversi.DARK;
+            table.store(Zobrist.hash(dark ? tree.getDark(m) : tree.getLight(m), dark ? tree.getLight(m) : tree.getDark(m)),
+                    remaining, tree.getScore(best), TranspositionTable.EXACT, tree.getSquare(best));
+        }
+    }
+
+    /**
+     * Score <code>m</code> without expanding it if the position after it is in the opening book or has already
+     * been searched to the horizon.  It is then left for {@link #reconsider} to expand if it is ever reached.
+     *
+     * @param m     move to score
+     * @param depth recursion depth of <code>m</code>
+     * @return whether <code>m</code> was scored
+     */
+    private boolean recall(int m, int depth)
+    {
+        final int remaining = MAX_DEPTH - depth;
+        if (remaining < 2) return false;
+        final boolean dark = tree.getWhoseTurn(m) == Reversi.LIGHT;
+        final long own = dark ? tree.getDark(m) : tree.getLight(m);
+        final long opp = dark ? tree.getLight(m) : tree.getDark(m);
+        int score = book == null ? OpeningBook.MISSING : book.probe(own, opp, remaining);
+        if (score == OpeningBook.MISSING) {
+            final long entry = table.probe(Zobrist.hash(own, opp), remaining);
+            if (entry == 0 || TranspositionTable.depth(entry) != remaining
+                    || TranspositionTable.bound(entry) != TranspositionTable.EXACT) return false;
+            score = TranspositionTable.score(entry);
+        }
+        tree.setScore(m, tree.getGain(m) - score);
+        recalled++;
+        return true;
+    }
+
+    private void sort(int m)
+    {
+        final long start = System.nanoTime();
+        tree.sortChildren(m);
+        sortNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Reconsiders the first <code>n</code> workers' trees, each at layer 1, splitting the range in half until
+     * one is left.
+     */
+    private static final class Replies
+            extends RecursiveAction
+    {
+        private final List<TreeSearch> workers;
+        private final int from;
+        private final int to;
+
+        Replies(List<TreeSearch> workers, int n)
+        {
+            this(workers, 0, n);
+        }
+
+        private Replies(List<TreeSearch> workers, int from, int to)
+        {
+            this.workers = workers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1) {
+                workers.get(from).reconsider(0, 1);
+            } else if (to > from) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new Replies(workers, from, mid), new Replies(workers, mid, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.thomashuss.reversi;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing for a position seen from the side to move.  Each bitboard is hashed a byte at a time,
+ * so a key costs sixteen table lookups rather than one per piece.  Swapping the two bitboards gives a
+ * different key, so the side to move is part of the hash.
+ */
+final class Zobrist
+{
+    private static final int BYTES = Long.BYTES;
+    private static final long[] OWN = new long[BYTES * 256];
+    private static final long[] OPP = new long[BYTES * 256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x2545F4914F6CDD1DL);
+        for (int i = 0; i < OWN.length; i++) {
+            OWN[i] = random.nextLong();
+            OPP[i] = random.nextLong();
+        }
+        for (int i = 0; i < BYTES; i++) {
+            OWN[i << 8] = OPP[i << 8] = 0;
+        }
+    }
+
+    private Zobrist()
+    {
+    }
+
+    static long hash(long own, long opp)
+    {
+        long h = 0;
+        for (int i = 0; i < BYTES; i++, own >>>= 8, opp >>>= 8) {
+            h ^= OWN[i << 8 | (int) (own & 0xff)] ^ OPP[i << 8 | (int) (opp & 0xff)];
+        }
+        return h;
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.thomashuss.reversi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BitboardTest
+{
+    /**
+     * Row and column steps for each direction, clockwise from up.
+     */
+    private static final int[] ROW_STEP = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] COL_STEP = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    @Test
+    void squaresAreNumberedRowByRow()
+    {
+        assertEquals(0, Bitboard.square(0, 0));
+        assertEquals(7, Bitboard.square(0, 7));
+        assertEquals(8, Bitboard.square(1, 0));
+        assertEquals(63, Bitboard.square(7, 7));
+        assertEquals(1L << 28, Bitboard.bit(3, 4));
+        assertEquals(2, Bitboard.count(Bitboard.bit(3, 3) | Bitboard.bit(4, 4)));
+    }
+
+    @Test
+    void shiftMovesEverySquareOneStepWithoutWrapping()
+    {
+        for (int dir = 0; dir < Bitboard.DIRECTIONS; dir++) {
+            for (int row = 0; row < Reversi.ROWS; row++) {
+                for (int col = 0; col < Reversi.COLS; col++) {
+                    final int r = row + ROW_STEP[dir];
+                    final int c = col + COL_STEP[dir];
+                    final long expected = r < 0 || r >= Reversi.ROWS || c < 0 || c >= Reversi.COLS
+                            ? 0 : Bitboard.bit(r, c);
+                    assertEquals(expected, Bitboard.shift(Bitboard.bit(row, col), dir),
+                            "direction " + dir + " from " + row + "," + col);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shiftRejectsUnknownDirections()
+    {
+        assertThrows(IllegalArgumentException.class, () -> Bitboard.shift(1, Bitboard.DIRECTIONS));
+    }
+
+    @Test
+    void movesAndFlipsMatchWalkingEachRay()
+    {
+        final Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            // fill between a few squares and most of the board, so that rays of every length come up
+            final double density = 0.1 + 0.85 * random.nextDouble();
+            long own = 0, opp = 0;
+            for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+                if (random.nextDouble() < density) {
+                    if (random.nextBoolean()) own |= 1L << sq;
+                    else opp |= 1L << sq;
+                }
+            }
+            long legal = 0;
+            for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+                final long expected = ((own | opp) & 1L << sq) == 0 ? walkFlips(own, opp, sq) : 0;
+                if (expected != 0) {
+                    legal |= 1L << sq;
+                    assertEquals(expected, Bitboard.flips(own, opp, sq), "flips at " + sq);
+                }
+            }
+            assertEquals(legal, Bitboard.moves(own, opp));
+        }
+    }
+
+    @Test
+    void perftFromTheStartMatchesPublishedCounts()
+    {
+        final long dark = Bitboard.bit(3, 4) | Bitboard.bit(4, 3);
+        final long light = Bitboard.bit(3, 3) | Bitboard.bit(4, 4);
+        for (int depth = 1; depth <= 6; depth++) {
+            assertEquals(Perft.START_COUNTS[depth - 1], Perft.perft(dark, light, depth), "depth " + depth);
+        }
+    }
+
+    /**
+     * Flip one square at a time along each ray, the way the board used to be searched.
+     */
+    private static long walkFlips(long own, long opp, int sq)
+    {
+        long flips = 0;
+        for (int dir = 0; dir < Bitboard.DIRECTIONS; dir++) {
+            long run = 0;
+            int r = sq / Reversi.COLS + ROW_STEP[dir];
+            int c = sq % Reversi.COLS + COL_STEP[dir];
+            while (r >= 0 && r < Reversi.ROWS && c >= 0 && c < Reversi.COLS && (opp & Bitboard.bit(r, c)) != 0) {
+                run |= Bitboard.bit(r, c);
+                r += ROW_STEP[dir];
+                c += COL_STEP[dir];
+            }
+            if (r >= 0 && r < Reversi.ROWS && c >= 0 && c < Reversi.COLS && (own & Bitboard.bit(r, c)) != 0) {
+                flips |= run;
+            }
+        }
+        return flips;
+    }
+}
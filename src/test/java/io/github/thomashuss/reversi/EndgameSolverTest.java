@@ -0,0 +1,81 @@
+package io.github.thomashuss.reversi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EndgameSolverTest
+{
+    @Test
+    void exactScoresMatchNegamax()
+    {
+        check(true, null);
+    }
+
+    @Test
+    void exactScoresMatchNegamaxWithATable()
+    {
+        check(true, new TranspositionTable(1 << 20));
+    }
+
+    @Test
+    void winDrawLossScoresMatchTheSignOfNegamax()
+    {
+        check(false, new TranspositionTable(1 << 20));
+    }
+
+    /**
+     * Solve positions with up to ten empty squares and compare the score of every move with an exhaustive
+     * search.
+     */
+    private static void check(boolean exact, TranspositionTable table)
+    {
+        final Random random = new Random(7);
+        final EndgameSolver solver = new EndgameSolver(10, exact, table);
+        final GameTree tree = new GameTree();
+        int solved = 0;
+        for (int empties = 1; empties <= 10; empties++) {
+            for (int i = 0; i < 6; i++) {
+                final long[] position = RandomPlay.toEmpties(random, empties);
+                if (position == null) continue;
+                final long own = position[0], opp = position[1];
+                // the color of the root is the one which is not about to move
+                final int root = tree.reset(Reversi.LIGHT, own, opp);
+                final int n = solver.search(Reversi.DARK, tree, root);
+                assertEquals(Bitboard.count(Bitboard.moves(own, opp)), n);
+                for (int m = tree.getFirst(root); m < tree.getFirst(root) + n; m++) {
+                    final int sq = tree.getSquare(m);
+                    final long flips = Bitboard.flips(own, opp, sq);
+                    final int expected = -negamax(opp & ~flips, own | flips | 1L << sq, false);
+                    assertEquals(exact ? expected : Integer.signum(expected), tree.getScore(m),
+                            "square " + sq + " with " + empties + " empty");
+                    assertEquals(exact ? expected : Integer.signum(expected), solver.solveAfter(tree, m));
+                    solved++;
+                }
+            }
+        }
+        assertTrue(solved > 100, "too few moves solved: " + solved);
+    }
+
+    /**
+     * @return final piece difference for the color to move with both sides playing perfectly
+     */
+    private static int negamax(long own, long opp, boolean passed)
+    {
+        final long legal = Bitboard.moves(own, opp);
+        if (legal == 0) {
+            if (passed) return Bitboard.count(own) - Bitboard.count(opp);
+            return -negamax(opp, own, true);
+        }
+        int best = -Bitboard.SQUARES;
+        for (long l = legal; l != 0; l &= l - 1) {
+            final int sq = Long.numberOfTrailingZeros(l);
+            final long flips = Bitboard.flips(own, opp, sq);
+            best = Math.max(best, -negamax(opp & ~flips, own | flips | 1L << sq, false));
+        }
+        return best;
+    }
+}
@@ -0,0 +1,176 @@
+package io.github.thomashuss.reversi;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameRecordTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsReadBackAsWritten()
+    throws IOException
+    {
+        final Path path = dir.resolve("games");
+        // enough records to fill the writer's buffer several times over
+        final List<GameRecord> records = randomGames(new Random(1), 5000);
+        write(path, records);
+        assertEquals(records, read(path));
+
+        final List<GameRecord> more = randomGames(new Random(2), 10);
+        write(path, more);
+        records.addAll(more);
+        assertEquals(records, read(path));
+    }
+
+    @Test
+    void readerFieldsMatchTheRecord()
+    throws IOException
+    {
+        final Path path = dir.resolve("games");
+        final GameRecord record = randomGames(new Random(3), 1).get(0);
+        write(path, List.of(record));
+        try (GameRecordReader reader = new GameRecordReader(path)) {
+            assertTrue(reader.next());
+            assertEquals(record.getHumanColor(), reader.getHumanColor());
+            assertEquals(record.getAlpha(), reader.getAlpha());
+            assertEquals(record.getDarkScore(), reader.getDarkScore());
+            assertEquals(record.getLightScore(), reader.getLightScore());
+            assertEquals(record.getMoveCount(), reader.getMoveCount());
+            for (int i = 0; i < record.getMoveCount(); i++) {
+                assertEquals(record.getMove(i), reader.getMove(i));
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void truncatedTailIsIgnoredThenCutOff()
+    throws IOException
+    {
+        final Path path = dir.resolve("games");
+        final List<GameRecord> records = randomGames(new Random(4), 20);
+        write(path, records);
+        final long whole = Files.size(path);
+        final GameRecord last = records.remove(records.size() - 1);
+        for (int cut = 1; cut <= last.getFrameLength(); cut++) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(whole - cut);
+            }
+            assertEquals(records, read(path), "cut " + cut + " bytes");
+        }
+
+        write(path, List.of(last));
+        records.add(last);
+        assertEquals(whole, Files.size(path));
+        assertEquals(records, read(path));
+    }
+
+    @Test
+    void tornMagicNumberIsWrittenAgain()
+    throws IOException
+    {
+        final Path path = dir.resolve("games");
+        write(path, List.of());
+        final byte[] magic = Files.readAllBytes(path);
+        assertEquals(Integer.BYTES, magic.length);
+
+        for (int n = 0; n < Integer.BYTES; n++) {
+            Files.write(path, Arrays.copyOf(magic, n));
+            final List<GameRecord> records = randomGames(new Random(n), 3);
+            write(path, records);
+            assertEquals(records, read(path));
+        }
+    }
+
+    @Test
+    void otherFilesAreLeftAlone()
+    throws IOException
+    {
+        final Path path = dir.resolve("other");
+        final byte[] bytes = {'h', 'i'};
+        Files.write(path, bytes);
+        assertThrows(IOException.class, () -> new GameRecordWriter(path));
+        assertArrayEquals(bytes, Files.readAllBytes(path));
+
+        Files.write(path, "hello".getBytes());
+        assertThrows(IOException.class, () -> new GameRecordWriter(path));
+        assertThrows(IOException.class, () -> new GameRecordReader(path));
+    }
+
+    private static void write(Path path, List<GameRecord> records)
+    throws IOException
+    {
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            for (final GameRecord record : records) {
+                writer.write(record);
+            }
+        }
+    }
+
+    private static List<GameRecord> read(Path path)
+    throws IOException
+    {
+        final List<GameRecord> records = new ArrayList<>();
+        try (GameRecordReader reader = new GameRecordReader(path)) {
+            while (reader.next()) {
+                records.add(reader.getRecord());
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Play whole games of random moves, recording passes as a game would.
+     */
+    private static List<GameRecord> randomGames(Random random, int n)
+    {
+        final List<GameRecord> records = new ArrayList<>();
+        final byte[] moves = new byte[GameRecord.MAX_MOVES];
+        for (int i = 0; i < n; i++) {
+            long own = RandomPlay.START_DARK, opp = RandomPlay.START_LIGHT, t;
+            boolean darkToMove = true;
+            int count = 0;
+            while (true) {
+                long legal = Bitboard.moves(own, opp);
+                if (legal == 0) {
+                    if (Bitboard.moves(opp, own) == 0) break;
+                    moves[count++] = GameRecord.PASS;
+                } else {
+                    for (int skip = random.nextInt(Bitboard.count(legal)); skip > 0; skip--) legal &= legal - 1;
+                    final int sq = Long.numberOfTrailingZeros(legal);
+                    final long flips = Bitboard.flips(own, opp, sq);
+                    own |= flips | 1L << sq;
+                    opp &= ~flips;
+                    moves[count++] = (byte) sq;
+                }
+                t = own;
+                own = opp;
+                opp = t;
+                darkToMove = !darkToMove;
+            }
+            final long dark = darkToMove ? own : opp;
+            final long light = darkToMove ? opp : own;
+            records.add(new GameRecord((byte) random.nextInt(Reversi.LIGHT + 1), random.nextDouble(),
+                    Bitboard.count(dark), Bitboard.count(light), Arrays.copyOf(moves, count)));
+        }
+        return records;
+    }
+}
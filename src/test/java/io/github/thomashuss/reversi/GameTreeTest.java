@@ -0,0 +1,179 @@
+package io.github.thomashuss.reversi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameTreeTest
+{
+    @Test
+    void compactKeepsTheSubtreeBreadthFirst()
+    {
+        final Random random = new Random(3);
+        for (int i = 0; i < 10; i++) {
+            final GameTree tree = new GameTree();
+            final int root = build(tree, random);
+            final int child = tree.getFirst(root) + random.nextInt(tree.getCount(root));
+            final String before = describe(tree, child);
+            final int nodes = count(tree, child);
+
+            assertEquals(0, tree.compact(child));
+            assertEquals(nodes, tree.size());
+            assertEquals(before, describe(tree, 0));
+            assertBreadthFirst(tree);
+        }
+    }
+
+    @Test
+    void graftCopiesASubtreeOverANode()
+    {
+        final Random random = new Random(4);
+        final GameTree from = new GameTree();
+        final int root = build(from, random);
+        final GameTree tree = new GameTree();
+        final int node = build(tree, random);
+        final int target = tree.getFirst(node);
+        final int src = from.getFirst(root) + from.getCount(root) - 1;
+        final int size = tree.size();
+
+        tree.graft(target, from, src);
+        assertEquals(describe(from, src), describe(tree, target));
+        assertEquals(size + count(from, src) - 1, tree.size());
+
+        // what used to hang below the target is left behind until the tree is compacted
+        final String grafted = describe(tree, node);
+        tree.compact(node);
+        assertEquals(count(tree, 0), tree.size());
+        assertEquals(grafted, describe(tree, 0));
+        assertBreadthFirst(tree);
+    }
+
+    @Test
+    void pruneKeepsTheBestLinesWithinBudget()
+    {
+        final Random random = new Random(5);
+        for (int i = 0; i < 10; i++) {
+            final GameTree tree = new GameTree();
+            final int root = build(tree, random);
+            final GameTree original = new GameTree();
+            original.copyOf(tree, root);
+            final int total = tree.size();
+            final int budget = 1 + tree.getCount(root) + random.nextInt(total);
+
+            assertEquals(0, tree.prune(root, budget));
+            assertTrue(tree.size() <= budget, tree.size() + " nodes kept for a budget of " + budget);
+            assertEquals(original.getCount(0), tree.getCount(0));
+            assertBreadthFirst(tree);
+            assertPruned(original, 0, tree, 0);
+        }
+    }
+
+    @Test
+    void pruneWithinBudgetEvictsNothing()
+    {
+        final GameTree tree = new GameTree();
+        final int root = build(tree, new Random(6));
+        final int total = count(tree, root);
+
+        tree.prune(root, total);
+        assertEquals(total, tree.size());
+        for (int n = 0; n < tree.size(); n++) {
+            assertFalse(tree.isEvicted(n));
+        }
+    }
+
+    /**
+     * Play a few random moves and expand the tree below the position reached as the engine would.
+     *
+     * @return the root
+     */
+    private static int build(GameTree tree, Random random)
+    {
+        long[] position;
+        do {
+            position = RandomPlay.toEmpties(random, 50 - random.nextInt(20));
+        } while (position == null || Bitboard.moves(position[0], position[1]) == 0);
+        final int root = tree.reset(Reversi.LIGHT, position[0], position[1]);
+        new TreeSearch(tree, new TranspositionTable(0)).update(root, 0, null, null);
+        return root;
+    }
+
+    private static int count(GameTree tree, int node)
+    {
+        int n = 1;
+        for (int c = tree.getFirst(node); c < tree.getFirst(node) + tree.getCount(node); c++) {
+            n += count(tree, c);
+        }
+        return n;
+    }
+
+    /**
+     * @return every field of every node in the subtree, in order, without the indices
+     */
+    private static String describe(GameTree tree, int node)
+    {
+        final StringBuilder s = new StringBuilder();
+        describe(tree, node, s);
+        return s.toString();
+    }
+
+    private static void describe(GameTree tree, int node, StringBuilder s)
+    {
+        s.append('(').append(tree.getSquare(node)).append(' ').append(tree.getWhoseTurn(node))
+                .append(' ').append(tree.getScore(node)).append(' ').append(tree.getGain(node))
+                .append(' ').append(tree.getDark(node)).append(' ').append(tree.getLight(node))
+                .append(tree.isExpanded(node) ? " e" : "").append(tree.isEvicted(node) ? " v" : "")
+                .append(tree.shouldSkipNext(node) ? " s" : "");
+        for (int c = tree.getFirst(node); c < tree.getFirst(node) + tree.getCount(node); c++) {
+            describe(tree, c, s);
+        }
+        s.append(')');
+    }
+
+    /**
+     * Check that the tree is laid out from 0 breadth first: each block of children comes straight after the
+     * one before it.
+     */
+    private static void assertBreadthFirst(GameTree tree)
+    {
+        int next = 1;
+        for (int n = 0; n < next; n++) {
+            if (tree.getCount(n) == 0) continue;
+            assertEquals(next, tree.getFirst(n), "children of " + n);
+            next += tree.getCount(n);
+        }
+        assertEquals(tree.size(), next);
+    }
+
+    /**
+     * Check a pruned node against the node it came from: the same move and score, and either the same children
+     * sorted best first or none, in which case it is evicted.
+     */
+    private static void assertPruned(GameTree original, int o, GameTree tree, int n)
+    {
+        assertEquals(original.getSquare(o), tree.getSquare(n));
+        assertEquals(original.getScore(o), tree.getScore(n));
+        assertEquals(original.getDark(o), tree.getDark(n));
+        assertEquals(original.getLight(o), tree.getLight(n));
+        if (tree.isEvicted(n)) {
+            assertNotEquals(0, original.getCount(o));
+            assertFalse(tree.isExpanded(n));
+            assertEquals(0, tree.getCount(n));
+            return;
+        }
+        assertEquals(original.isExpanded(o), tree.isExpanded(n));
+        assertEquals(original.getCount(o), tree.getCount(n));
+        final int first = tree.getFirst(n);
+        for (int c = first; c < first + tree.getCount(n); c++) {
+            if (c > first) assertTrue(tree.getScore(c - 1) >= tree.getScore(c), "children sorted best first");
+            final int match = original.find(o, tree.getSquare(c));
+            assertNotEquals(GameTree.NONE, match);
+            assertPruned(original, match, tree, c);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.thomashuss.reversi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonteCarloTest
+{
+    @Test
+    void searchScoresEveryLegalMoveOnce()
+    {
+        final Random random = new Random(1);
+        final MonteCarlo engine = new MonteCarlo();
+        engine.setBudget(0, 200);
+        final GameTree tree = new GameTree();
+        for (int i = 0; i < 100; i++) {
+            final long[] position = RandomPlay.toEmpties(random, random.nextInt(58));
+            if (position == null) continue;
+            final int root = tree.reset(Reversi.LIGHT, position[0], position[1]);
+            final int n = engine.search(Reversi.DARK, tree, root);
+            assertLegal(tree, root, Reversi.DARK, position[0], position[1], n);
+        }
+    }
+
+    @Test
+    void playoutBudgetIsExact()
+    {
+        final MonteCarlo engine = new MonteCarlo();
+        final GameTree tree = new GameTree();
+        final int root = tree.reset(Reversi.LIGHT, ReversiEngine.INITIAL_DARK, ReversiEngine.INITIAL_LIGHT);
+        engine.setBudget(0, 1000);
+        engine.search(Reversi.DARK, tree, root);
+        assertEquals(1000, engine.getPlayouts());
+
+        // every move is still played out once
+        engine.setBudget(0, 1);
+        engine.search(Reversi.DARK, tree,
+                tree.reset(Reversi.LIGHT, ReversiEngine.INITIAL_DARK, ReversiEngine.INITIAL_LIGHT));
+        assertEquals(1004, engine.getPlayouts());
+    }
+
+    @Test
+    void oneThreadGivesTheSameScoresEveryTime()
+    {
+        final long[] position = RandomPlay.toEmpties(new Random(2), 40);
+        final MonteCarlo engine = new MonteCarlo();
+        engine.setBudget(0, 2000);
+        final GameTree first = new GameTree();
+        final GameTree second = new GameTree();
+        final int n = engine.search(Reversi.DARK, first, first.reset(Reversi.LIGHT, position[0], position[1]));
+        engine.search(Reversi.DARK, second, second.reset(Reversi.LIGHT, position[0], position[1]));
+        for (int i = 0; i < n; i++) {
+            assertEquals(first.getSquare(first.getFirst(0) + i), second.getSquare(second.getFirst(0) + i));
+            assertEquals(first.getScore(first.getFirst(0) + i), second.getScore(second.getFirst(0) + i));
+        }
+    }
+
+    @Test
+    void threadsShareTheBudgetAndOnlyPlayLegalMoves()
+    {
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            final Random random = new Random(3);
+            final MonteCarlo engine = new MonteCarlo();
+            engine.setPool(pool);
+            engine.setBudget(0, 500);
+            final GameTree tree = new GameTree();
+            long expected = 0;
+            for (int i = 0; i < 30; i++) {
+                final long[] position = RandomPlay.toEmpties(random, random.nextInt(58));
+                if (position == null) continue;
+                final int root = tree.reset(Reversi.LIGHT, position[0], position[1]);
+                final int n = engine.search(Reversi.DARK, tree, root);
+                assertLegal(tree, root, Reversi.DARK, position[0], position[1], n);
+                if (n != 0) expected += 500;
+                assertEquals(expected, engine.getPlayouts());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void wholeGamesEndLegally()
+    {
+        final MonteCarlo engine = new MonteCarlo();
+        engine.setBudget(0, 100);
+        final GameTree tree = new GameTree();
+        for (int game = 0; game < 3; game++) {
+            int node = tree.reset(Reversi.LIGHT, ReversiEngine.INITIAL_DARK, ReversiEngine.INITIAL_LIGHT);
+            int plies = 0;
+            while (engine.searchAfter(tree, node) != 0) {
+                final byte mover = tree.shouldSkipNext(node) ? tree.getWhoseTurn(node)
+                        : Reversi.otherColor(tree.getWhoseTurn(node));
+                final long own = mover == Reversi.DARK ? tree.getDark(node) : tree.getLight(node);
+                final long opp = mover == Reversi.DARK ? tree.getLight(node) : tree.getDark(node);
+                assertLegal(tree, node, mover, own, opp, tree.getCount(node));
+                node = tree.getFirst(node) + game % tree.getCount(node);
+                plies++;
+            }
+            assertEquals(0, Bitboard.moves(tree.getDark(node), tree.getLight(node)));
+            assertEquals(0, Bitboard.moves(tree.getLight(node), tree.getDark(node)));
+            assertTrue(plies <= Bitboard.SQUARES - 4);
+        }
+    }
+
+    @Test
+    void cancelledSearchThrows()
+    {
+        final MonteCarlo engine = new MonteCarlo();
+        final CancelToken token = new CancelToken();
+        token.cancel();
+        engine.setToken(token);
+        final GameTree tree = new GameTree();
+        final int root = tree.reset(Reversi.LIGHT, ReversiEngine.INITIAL_DARK, ReversiEngine.INITIAL_LIGHT);
+        assertThrows(SearchCancelled.class, () -> engine.search(Reversi.DARK, tree, root));
+    }
+
+    /**
+     * Check that the children of <code>node</code> are the legal moves for <code>mover</code>, once each, with
+     * the boards they lead to and scores within reach, sorted best first.
+     */
+    private static void assertLegal(GameTree tree, int node, byte mover, long own, long opp, int n)
+    {
+        final long legal = Bitboard.moves(own, opp);
+        assertEquals(Bitboard.count(legal), n);
+        long seen = 0;
+        for (int c = tree.getFirst(node); c < tree.getFirst(node) + n; c++) {
+            final int sq = tree.getSquare(c);
+            assertTrue((legal & 1L << sq) != 0, "square " + sq + " is legal");
+            assertEquals(0, seen & 1L << sq, "square " + sq + " once");
+            seen |= 1L << sq;
+            final long flips = Bitboard.flips(own, opp, sq);
+            final long newOwn = own | flips | 1L << sq, newOpp = opp & ~flips;
+            assertEquals(mover, tree.getWhoseTurn(c));
+            assertEquals(mover == Reversi.DARK ? newOwn : newOpp, tree.getDark(c));
+            assertEquals(mover == Reversi.DARK ? newOpp : newOwn, tree.getLight(c));
+            assertEquals(Bitboard.count(flips) + 1, tree.getGain(c));
+            assertTrue(Math.abs(tree.getScore(c)) <= Bitboard.SQUARES, "score " + tree.getScore(c));
+            if (c > tree.getFirst(node)) assertTrue(tree.getScore(c - 1) >= tree.getScore(c), "sorted best first");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.thomashuss.reversi;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OpeningBookTest
+{
+    private static final int PLIES = 5;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void symmetryHelpersMoveEverySquare()
+    {
+        final Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            final long b = random.nextLong();
+            assertEquals(transform(b, 2), Bitboard.flipVertical(b));
+            assertEquals(transform(b, 1), Bitboard.mirrorHorizontal(b));
+            assertEquals(transform(b, 4), Bitboard.flipDiagonal(b));
+        }
+    }
+
+    @Test
+    void everySymmetricFormOfABookPositionIsFound()
+    throws IOException
+    {
+        final Path path = dir.resolve("book");
+        final int written = OpeningBook.build(path, PLIES);
+        final Set<Long> seen = new HashSet<>();
+        try (OpeningBook book = new OpeningBook(path)) {
+            assertEquals(PLIES, book.getPlies());
+            assertEquals(written, book.size());
+            check(book, ReversiEngine.INITIAL_DARK, ReversiEngine.INITIAL_LIGHT, PLIES, seen);
+        }
+    }
+
+    @Test
+    void positionsOutsideTheBookAreMissing()
+    throws IOException
+    {
+        final Path path = dir.resolve("book");
+        OpeningBook.build(path, PLIES);
+        try (OpeningBook book = new OpeningBook(path)) {
+            final Random random = new Random(2);
+            for (int i = 0; i < 100; i++) {
+                final long[] position = RandomPlay.toEmpties(random, Bitboard.SQUARES - 4 - PLIES - 1);
+                if (position == null || Bitboard.moves(position[0], position[1]) == 0) continue;
+                assertEquals(OpeningBook.MISSING, book.probe(position[0], position[1], 2));
+            }
+            // the right number of pieces, but not reachable
+            assertEquals(OpeningBook.MISSING, book.probe(0x0fL, 0xf0L, 2));
+        }
+    }
+
+    @Test
+    void damagedBooksAreRefused()
+    throws IOException
+    {
+        final Path path = dir.resolve("book");
+        OpeningBook.build(path, 2);
+        final byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> new OpeningBook(path));
+        bytes[0] ^= 1;
+        Files.write(path, bytes);
+        assertThrows(IOException.class, () -> new OpeningBook(path));
+    }
+
+    /**
+     * Probe every form of the position and of everything reachable from it within <code>plies</code>.
+     */
+    private static void check(OpeningBook book, long own, long opp, int plies, Set<Long> seen)
+    {
+        long legal = Bitboard.moves(own, opp);
+        if (legal == 0) {
+            if (Bitboard.moves(opp, own) != 0) check(book, opp, own, plies, seen);
+            return;
+        }
+        if (!seen.add(own * 31 + opp)) return;
+        for (int remaining = 2; remaining <= TreeSearch.MAX_DEPTH; remaining++) {
+            final int expected = OpeningBook.value(own, opp, remaining);
+            for (int t = 0; t < 8; t++) {
+                assertEquals(expected, book.probe(transform(own, t), transform(opp, t), remaining),
+                        "symmetry " + t + " looking " + remaining + " plies ahead");
+            }
+        }
+        if (plies == 0) return;
+        for (; legal != 0; legal &= legal - 1) {
+            final int sq = Long.numberOfTrailingZeros(legal);
+            final long flips = Bitboard.flips(own, opp, sq);
+            check(book, opp & ~flips, own | flips | 1L << sq, plies - 1, seen);
+        }
+    }
+
+    /**
+     * Move each square one at a time: bit 0 of <code>t</code> mirrors the files, bit 1 the rows and bit 2
+     * swaps rows with files first.
+     */
+    private static long transform(long b, int t)
+    {
+        long result = 0;
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            if ((b & 1L << sq) == 0) continue;
+            int row = sq / Reversi.COLS, col = sq % Reversi.COLS, swap;
+            if ((t & 4) != 0) {
+                swap = row;
+                row = col;
+                col = swap;
+            }
+            if ((t & 2) != 0) row = Reversi.ROWS - 1 - row;
+            if ((t & 1) != 0) col = Reversi.COLS - 1 - col;
+            result |= Bitboard.bit(row, col);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.thomashuss.reversi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PatternEvaluatorTest
+{
+    @Test
+    void statesKeptMoveByMoveMatchStatesWorkedOutAfresh()
+    {
+        final Random random = new Random(1);
+        final PatternEvaluator played = new PatternEvaluator();
+        final PatternEvaluator fresh = new PatternEvaluator();
+        final byte[] colors = new byte[GameRecord.MAX_MOVES];
+        final int[] squares = new int[GameRecord.MAX_MOVES];
+        final long[] flipped = new long[GameRecord.MAX_MOVES];
+
+        for (int game = 0; game < 200; game++) {
+            long dark = ReversiEngine.INITIAL_DARK, light = ReversiEngine.INITIAL_LIGHT;
+            byte color = Reversi.DARK;
+            played.setPosition(dark, light);
+            final int[] start = played.getStates();
+            int n = 0;
+            while (true) {
+                final long own = color == Reversi.DARK ? dark : light;
+                final long opp = color == Reversi.DARK ? light : dark;
+                long legal = Bitboard.moves(own, opp);
+                if (legal == 0) {
+                    if (Bitboard.moves(opp, own) == 0) break;
+                } else {
+                    for (int skip = random.nextInt(Bitboard.count(legal)); skip > 0; skip--) legal &= legal - 1;
+                    final int sq = Long.numberOfTrailingZeros(legal);
+                    final long flips = Bitboard.flips(own, opp, sq);
+                    played.play(color, sq, flips);
+                    dark ^= flips | (color == Reversi.DARK ? 1L << sq : 0);
+                    light ^= flips | (color == Reversi.LIGHT ? 1L << sq : 0);
+                    colors[n] = color;
+                    squares[n] = sq;
+                    flipped[n++] = flips;
+
+                    fresh.setPosition(dark, light);
+                    assertArrayEquals(fresh.getStates(), played.getStates(), "after move " + n);
+                    assertEquals(fresh.evaluate(Reversi.DARK, dark, light), played.evaluate(Reversi.DARK, dark, light));
+                }
+                color = Reversi.otherColor(color);
+            }
+            while (n > 0) {
+                n--;
+                played.undo(colors[n], squares[n], flipped[n]);
+            }
+            assertArrayEquals(start, played.getStates(), "after taking every move back");
+        }
+    }
+
+    @Test
+    void swappingColorsSwapsTheValue()
+    {
+        final Random random = new Random(2);
+        final PatternEvaluator evaluator = new PatternEvaluator();
+        for (int i = 0; i < 500; i++) {
+            final long[] position = RandomPlay.toEmpties(random, random.nextInt(56));
+            if (position == null) continue;
+            final long own = position[0], opp = position[1];
+            evaluator.setPosition(own, opp);
+            final int asDark = evaluator.evaluate(Reversi.DARK, own, opp);
+            evaluator.setPosition(opp, own);
+            assertEquals(asDark, evaluator.evaluate(Reversi.LIGHT, own, opp));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.thomashuss.reversi;
+
+import java.util.Random;
+
+/**
+ * Positions reached by playing random legal moves from the start, for tests which need many ordinary
+ * positions.
+ */
+final class RandomPlay
+{
+    static final long START_DARK = Bitboard.bit(3, 4) | Bitboard.bit(4, 3);
+    static final long START_LIGHT = Bitboard.bit(3, 3) | Bitboard.bit(4, 4);
+
+    private RandomPlay()
+    {
+    }
+
+    /**
+     * Play random moves until only <code>empties</code> squares are left, passing when there is no move.
+     *
+     * @return the pieces of the color to move and of the other color, or null if the game ended sooner
+     */
+    static long[] toEmpties(Random random, int empties)
+    {
+        long own = START_DARK, opp = START_LIGHT, t;
+        while (Bitboard.SQUARES - Bitboard.count(own | opp) > empties) {
+            long legal = Bitboard.moves(own, opp);
+            if (legal == 0) {
+                if (Bitboard.moves(opp, own) == 0) return null;
+            } else {
+                for (int skip = random.nextInt(Bitboard.count(legal)); skip > 0; skip--) legal &= legal - 1;
+                final int sq = Long.numberOfTrailingZeros(legal);
+                final long flips = Bitboard.flips(own, opp, sq);
+                own |= flips | 1L << sq;
+                opp &= ~flips;
+            }
+            t = own;
+            own = opp;
+            opp = t;
+        }
+        return new long[]{own, opp};
+    }
+}